@@ -0,0 +1,312 @@
+package vax_interpreter;
+
+import java.math.BigInteger;
+import java.util.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * Checks POLYF, POLYD and POLYG against an exact model of Horner's rule.
+ * Each case is assembled into guest memory and run as an instruction, and
+ * R0-R5 and the condition codes are compared with the model, which works
+ * on exact binary fractions: each product is truncated to 31 (F) or 63
+ * (D, G) bits, each sum is rounded to the type, a too large sum overflows
+ * and leaves R0-R5 unchanged, and a too small one is zero.
+ *
+ * Run from the repository root:
+ *   javac -d out vax_interpreter/*.java test/vax_interpreter/PolyCheck.java
+ *   java -ea -cp out vax_interpreter.PolyCheck
+ */
+class PolyCheck {
+    private static final int CodeAddr = 0x7ffff000;
+    private static final int TableAddr = 0x7fff0000;
+    private static final int Sentinel = 0x5a5a0000;
+    private static final int Cases = 3000;
+
+    private static final Random random = new Random(39);
+    // one process runs every case
+    private static final Context context = new Context();
+    private static int failures;
+    // cases that would differ if products were not truncated
+    private static int truncated;
+    private static int overflows;
+    private static int zeros;
+
+    /**
+     * A floating format: exponent bits, precision including the hidden
+     * bit, exponent bias, size in bytes and product truncation.
+     */
+    enum Format {
+        F(DataType.F, 8, 24, 128, 31, new byte[] {0x55}),
+        D(DataType.D, 8, 56, 128, 63, new byte[] {0x75}),
+        G(DataType.G, 11, 53, 1024, 63, new byte[] {(byte)0xfd, 0x55});
+
+        final DataType type;
+        final int expBits;
+        final int precision;
+        final int bias;
+        final int bits;
+        final int productBits;
+        final byte[] opcode;
+
+        Format(DataType type, int expBits, int precision, int bias, int productBits, byte[] opcode) {
+            this.type = type;
+            this.expBits = expBits;
+            this.precision = precision;
+            this.bias = bias;
+            this.bits = type.size * 8;
+            this.productBits = productBits;
+            this.opcode = opcode;
+        }
+    }
+
+    /**
+     * An exact value num * 2 ** exp.
+     */
+    static class Exact {
+        static final Exact ZERO = new Exact(BigInteger.ZERO, 0);
+
+        final BigInteger num;
+        final int exp;
+
+        Exact(BigInteger num, int exp) {
+            this.num = num;
+            this.exp = exp;
+        }
+
+        Exact multiply(Exact o) {
+            return new Exact(num.multiply(o.num), exp + o.exp);
+        }
+
+        Exact add(Exact o) {
+            int e = Math.min(exp, o.exp);
+            return new Exact(num.shiftLeft(exp - e).add(o.num.shiftLeft(o.exp - e)), e);
+        }
+
+        boolean isZero() {
+            return num.signum() == 0;
+        }
+
+        // keeps the bits most significant bits, dropping the rest
+        Exact truncate(int bits) {
+            int drop = num.abs().bitLength() - bits;
+            if (drop <= 0) {
+                return this;
+            }
+            BigInteger mag = num.abs().shiftRight(drop);
+            return new Exact(num.signum() < 0 ? mag.negate() : mag, exp + drop);
+        }
+
+        // rounds to bits significant bits, halfway cases away from zero
+        Exact round(int bits) {
+            int drop = num.abs().bitLength() - bits;
+            if (drop <= 0) {
+                return this;
+            }
+            BigInteger mag = num.abs().shiftRight(drop - 1).add(BigInteger.ONE).shiftRight(1);
+            return new Exact(num.signum() < 0 ? mag.negate() : mag, exp + drop);
+        }
+    }
+
+    public static void main(String[] args) {
+        for (Format fmt : Format.values()) {
+            fixedCases(fmt);
+            for (int i = 0; i < Cases; i++) {
+                int degree = random.nextInt(8);
+                long arg = randomValue(fmt, random.nextInt(10) == 0);
+                long[] coefs = new long[degree + 1];
+                boolean wide = random.nextInt(10) == 0;
+                for (int j = 0; j <= degree; j++) {
+                    coefs[j] = randomValue(fmt, wide);
+                }
+                check(fmt, arg, coefs);
+            }
+        }
+        System.out.printf("POLY: %d cases, %d depend on truncation, %d overflow, %d zero; %d failed\n",
+                          3 * Cases, truncated, overflows, zeros, failures);
+        if (failures > 0 || truncated == 0 || overflows == 0 || zeros == 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void fixedCases(Format fmt) {
+        long one = encode(fmt, new Exact(BigInteger.ONE, 0));
+        long two = encode(fmt, new Exact(BigInteger.TWO, 0));
+        long minusTwo = encode(fmt, new Exact(BigInteger.TWO.negate(), 0));
+        long zero = 0;
+        long huge = encode(fmt, new Exact(BigInteger.ONE, (1 << fmt.expBits - 1) - 2));
+        long tiny = encode(fmt, new Exact(BigInteger.ONE, 1 - fmt.bias + 1));
+
+        check(fmt, two, new long[] {one});                  // degree 0
+        check(fmt, two, new long[] {one, minusTwo});        // 1 * 2 - 2 is zero
+        check(fmt, zero, new long[] {huge, one});           // zero argument
+        check(fmt, huge, new long[] {huge, one});           // overflow
+        check(fmt, tiny, new long[] {tiny, zero});          // underflow to zero
+        long big = encode(fmt, new Exact(BigInteger.ONE, (1 << fmt.expBits - 1) - 3));
+        check(fmt, two, new long[] {big, zero, zero});      // overflow at the second step
+    }
+
+    private static void check(Format fmt, long arg, long[] coefs) {
+        Long expected = model(fmt, arg, coefs, fmt.productBits);
+        Long untruncated = model(fmt, arg, coefs, Integer.MAX_VALUE);
+        if (!Objects.equals(expected, untruncated)) {
+            ++truncated;
+        }
+        if (expected == null) {
+            ++overflows;
+        } else if (expected == 0) {
+            ++zeros;
+        }
+
+        run(fmt, arg, coefs);
+        int[] r = context.register;
+        boolean ok;
+        if (expected == null) {
+            ok = context.flagV.get();
+            for (int i = 0; i <= 5; i++) {
+                ok &= r[i] == Sentinel + i;
+            }
+        } else {
+            long result = r[0] & 0xffffffffL;
+            if (fmt != Format.F) {
+                result |= (long)r[1] << 32;
+            }
+            int end = TableAddr + coefs.length * fmt.type.size;
+            ok = result == expected && r[2] == 0 && r[3] == end
+                && (fmt == Format.F ? r[1] == 0 : r[4] == 0 && r[5] == 0)
+                && !context.flagV.get()
+                && context.flagZ.get() == (expected == 0)
+                && context.flagN.get() == (expected != 0 && isNegative(fmt, expected));
+        }
+        if (!ok) {
+            ++failures;
+            System.out.printf("%s arg %x coefs %s: expected %s, got R0-R5 %s V=%b\n",
+                              fmt, arg, hex(coefs), expected == null ? "overflow" : Long.toHexString(expected),
+                              hex(Arrays.stream(r, 0, 6).mapToLong(v -> v & 0xffffffffL).toArray()),
+                              context.flagV.get());
+        }
+    }
+
+    // the raw result, or null on overflow
+    private static Long model(Format fmt, long arg, long[] coefs, int productBits) {
+        Exact x = decode(fmt, arg);
+        Exact r = decode(fmt, coefs[0]);
+        for (int i = 1; i < coefs.length; i++) {
+            Exact sum = r.multiply(x).truncate(productBits).add(decode(fmt, coefs[i])).round(fmt.precision);
+            if (overflows(fmt, sum)) {
+                return null;
+            }
+            r = decode(fmt, encode(fmt, sum));
+        }
+        return encode(fmt, r);
+    }
+
+    private static void run(Format fmt, long arg, long[] coefs) {
+        int size = fmt.type.size;
+        byte[] table = new byte[coefs.length * size];
+        for (int i = 0; i < coefs.length; i++) {
+            for (int b = 0; b < size; b++) {
+                table[i * size + b] = (byte)(coefs[i] >>> 8 * b);
+            }
+        }
+        context.memory.storeBytes(TableAddr, table, table.length);
+
+        // POLYx R6, #degree, (R8)
+        byte[] code = Arrays.copyOf(fmt.opcode, fmt.opcode.length + 3);
+        code[fmt.opcode.length] = 0x56;
+        code[fmt.opcode.length + 1] = (byte)(coefs.length - 1);
+        code[fmt.opcode.length + 2] = 0x68;
+        context.memory.storeBytes(CodeAddr, code, code.length);
+        // instructions are only fetched below textSize
+        context.memory.textSize = CodeAddr + code.length;
+
+        for (int i = 0; i <= 5; i++) {
+            context.register[i] = Sentinel + i;
+        }
+        context.register[6] = (int)arg;
+        context.register[7] = (int)(arg >>> 32);
+        context.register[8] = TableAddr;
+        context.register[PC] = CodeAddr;
+        context.psl = 0;
+        Instruction.fetch(context).execute(context);
+    }
+
+    // a value of exponent near 1, or anywhere in the range when wide
+    private static long randomValue(Format fmt, boolean wide) {
+        if (random.nextInt(20) == 0) {
+            return 0;
+        }
+        int limit = 1 << fmt.expBits;
+        int biased = wide ? 1 + random.nextInt(limit - 1) : fmt.bias - 20 + random.nextInt(41);
+        int fractionBits = fmt.bits - 1 - fmt.expBits;
+        long fraction = random.nextLong() & (1L << fractionBits) - 1;
+        if (random.nextInt(3) == 0) {
+            // short fractions make exact and halfway cases likely
+            fraction &= -(1L << fractionBits - 1 - random.nextInt(20));
+        }
+        long logical = (long)random.nextInt(2) << fmt.bits - 1 | (long)biased << fractionBits | fraction;
+        return toRaw(fmt, logical);
+    }
+
+    private static Exact decode(Format fmt, long raw) {
+        long logical = toLogical(fmt, raw);
+        int fractionBits = fmt.bits - 1 - fmt.expBits;
+        int biased = (int)(logical >>> fractionBits) & (1 << fmt.expBits) - 1;
+        if (biased == 0) {
+            return Exact.ZERO;
+        }
+        long mantissa = 1L << fractionBits | logical & (1L << fractionBits) - 1;
+        BigInteger num = BigInteger.valueOf(mantissa);
+        if (logical >>> fmt.bits - 1 != 0) {
+            num = num.negate();
+        }
+        // 0.1f * 2 ** (biased - bias)
+        return new Exact(num, biased - fmt.bias - fractionBits - 1);
+    }
+
+    // v must already be rounded to the precision; zero when too small
+    private static long encode(Format fmt, Exact v) {
+        if (v.isZero()) {
+            return 0;
+        }
+        BigInteger mag = v.num.abs();
+        int biased = v.exp + mag.bitLength() + fmt.bias;
+        if (biased <= 0) {
+            return 0;
+        }
+        int fractionBits = fmt.bits - 1 - fmt.expBits;
+        long fraction = mag.shiftLeft(fractionBits + 1 - mag.bitLength()).longValue() & (1L << fractionBits) - 1;
+        long sign = v.num.signum() < 0 ? 1 : 0;
+        return toRaw(fmt, sign << fmt.bits - 1 | (long)biased << fractionBits | fraction);
+    }
+
+    private static boolean overflows(Format fmt, Exact v) {
+        return !v.isZero() && v.exp + v.num.abs().bitLength() + fmt.bias >= 1 << fmt.expBits;
+    }
+
+    private static boolean isNegative(Format fmt, long raw) {
+        return toLogical(fmt, raw) >>> fmt.bits - 1 != 0;
+    }
+
+    // the logical value has the sign and exponent in its highest word;
+    // memory holds the 16-bit words lowest first
+    private static long toRaw(Format fmt, long logical) {
+        long raw = 0;
+        int words = fmt.bits / 16;
+        for (int i = 0; i < words; i++) {
+            raw |= (logical >>> 16 * (words - 1 - i) & 0xffff) << 16 * i;
+        }
+        return raw;
+    }
+
+    private static long toLogical(Format fmt, long raw) {
+        return toRaw(fmt, raw);
+    }
+
+    private static String hex(long[] vals) {
+        StringBuilder sb = new StringBuilder();
+        for (long v : vals) {
+            sb.append(sb.length() == 0 ? "" : " ").append(Long.toHexString(v));
+        }
+        return sb.toString();
+    }
+}
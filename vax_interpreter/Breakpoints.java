@@ -0,0 +1,121 @@
+package vax_interpreter;
+
+import java.io.Console;
+import java.util.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * Breakpoints given with -b, as a guest address or as the name of a
+ * procedure in the a.out symbol table. They are resolved each time an
+ * image is loaded.
+ *
+ * An installed breakpoint replaces the opcode byte in guest text with BPT,
+ * so other instructions run without any check. The original byte is kept
+ * here and put back to decode the instruction once the breakpoint has been
+ * reported.
+ */
+class Breakpoints {
+    private static final int BPT = 0x3;
+    private static final int EntryMaskSize = 2;
+    private static final List<String> requests = new ArrayList<>();
+
+    // breakpoint address -> original opcode byte
+    private final Map<Integer, Integer> saved = new HashMap<>();
+
+    Breakpoints() {}
+
+    Breakpoints(Breakpoints src) {
+        saved.putAll(src.saved);
+    }
+
+    public static void request(String spec) {
+        requests.add(spec);
+    }
+
+    public static boolean isRequested() {
+        return !requests.isEmpty();
+    }
+
+    /**
+     * Installs the requested breakpoints into a newly loaded image.
+     * symbols maps the text symbols of the image to their values.
+     */
+    public void install(Context.Memory memory, Map<String, Integer> symbols) {
+        saved.clear();
+        for (String spec : requests) {
+            Integer addr = resolve(spec, symbols);
+            if (addr == null || addr < 0 || addr >= memory.textSize || saved.containsKey(addr)) {
+                continue;
+            }
+            plant(memory, addr);
+        }
+    }
+
+    /**
+     * Plants breakpoints at addrs again, as a checkpoint is restored.
+     */
+    public void reinstall(Context.Memory memory, Collection<Integer> addrs) {
+        saved.clear();
+        for (int addr : addrs) {
+            plant(memory, addr);
+        }
+    }
+
+    public Set<Integer> addresses() {
+        return saved.keySet();
+    }
+
+    /**
+     * Puts the original bytes back into text, a copy of the image with
+     * the breakpoints planted.
+     */
+    public byte[] unpatch(byte[] text) {
+        for (Map.Entry<Integer, Integer> e : saved.entrySet()) {
+            text[e.getKey()] = (byte)(int)e.getValue();
+        }
+        return text;
+    }
+
+    private void plant(Context.Memory memory, int addr) {
+        saved.put(addr, memory.loadByte(addr) & 0xff);
+        memory.patchText(addr, BPT);
+    }
+
+    public boolean isSet(int addr) {
+        return saved.containsKey(addr);
+    }
+
+    /**
+     * Reports the breakpoint at addr, waits for the user when a console is
+     * attached, and executes the instruction the breakpoint replaced.
+     */
+    public void hit(int addr, Context context) {
+        context.register[PC] = addr;
+        System.err.printf("Breakpoint at %08x\n", addr);
+        for (String line : Process.dumpDatas(context)) {
+            System.err.println(line);
+        }
+        Console console = System.console();
+        if (console != null) {
+            console.readLine("[Enter to continue] ");
+        }
+
+        context.memory.patchText(addr, saved.get(addr));
+        Instruction ins = Instruction.fetch(context);
+        context.memory.patchText(addr, BPT);
+        ins.execute(context);
+    }
+
+    // a procedure symbol points at its entry mask; break on its first instruction
+    private static Integer resolve(String spec, Map<String, Integer> symbols) {
+        try {
+            return Integer.decode(spec);
+        } catch (NumberFormatException e) {
+            Integer value = symbols.get(spec);
+            if (value == null) {
+                value = symbols.get("_" + spec);
+            }
+            return value == null ? null : value + EntryMaskSize;
+        }
+    }
+}
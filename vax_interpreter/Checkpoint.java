@@ -0,0 +1,209 @@
+package vax_interpreter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import static vax_interpreter.Kernel.Constant.*;
+
+/**
+ * Checkpoints of the process started from the command line, requested
+ * with -c path[:seconds]. Every interval (60 seconds by default) the
+ * process writes its registers, user structure, open files and memory to
+ * path between two instructions, and -r path starts it again from there.
+ *
+ * A checkpoint is written to a temporary file next to path, which then
+ * replaces path, so a crash while writing leaves the last one intact. It
+ * is skipped while the process has children, whose state is not saved.
+ * Pipes cannot be reopened and are closed on restore; files are reopened
+ * by path at their saved offset. Breakpoints set with -b are planted
+ * again at the same addresses.
+ */
+class Checkpoint {
+    private static final int Magic = 0x56415843;    // "VAXC"
+    private static final int Version = 1;
+    private static final long DefaultIntervalMillis = 60000;
+
+    // kinds of open file entries
+    private static final int ClosedFile = 0;
+    private static final int ConsoleFile = 1;
+    private static final int PathFile = 2;
+    private static final int SharedFile = 3;
+
+    private static Path path;
+    private static volatile boolean due;
+
+    public static void request(String spec) {
+        int colon = spec.lastIndexOf(':');
+        long interval = DefaultIntervalMillis;
+        if (colon > 0) {
+            interval = Long.parseLong(spec.substring(colon + 1)) * 1000;
+            spec = spec.substring(0, colon);
+        }
+        path = Paths.get(spec);
+        Timer timer = new Timer("Checkpoint", true);
+        timer.schedule(new TimerTask() {
+            @Override public void run() {
+                due = true;
+            }
+        }, interval, interval);
+    }
+
+    public static boolean isDue() {
+        return due;
+    }
+
+    /**
+     * Writes the checkpoint of context that is due. Called between two
+     * instructions, holding Context.class.
+     */
+    public static void take(Context context) {
+        due = false;
+        if (context.u.u_procp.hasChildren()) {
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            write(context, out);
+        } catch (IOException e) {
+            System.err.println("Checkpoint: " + e);
+            return;
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Checkpoint: " + e);
+        }
+    }
+
+    /**
+     * Returns a context holding the process saved in the checkpoint at
+     * spec.
+     */
+    public static Context restore(String spec) throws IOException {
+        Context context = new Context();
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(Paths.get(spec))))) {
+            if (in.readInt() != Magic || in.readInt() != Version) {
+                throw new IOException(spec + ": not a checkpoint");
+            }
+            read(context, in);
+        }
+        return context;
+    }
+
+    private static void write(Context context, DataOutputStream out) throws IOException {
+        out.writeInt(Magic);
+        out.writeInt(Version);
+        for (int reg : context.register) {
+            out.writeInt(reg);
+        }
+        out.writeInt(context.psl);
+
+        Context.User u = context.u;
+        out.writeShort(u.u_procp.p_pid);
+        out.writeShort(u.u_uid);
+        out.writeShort(u.u_gid);
+        out.writeShort(u.u_ruid);
+        out.writeShort(u.u_rgid);
+        out.writeShort(u.u_cmask);
+        out.writeUTF(u.u_cdir.toString());
+        for (int sig : u.u_signal) {
+            out.writeInt(sig);
+        }
+        for (int fd = 0; fd < NOFILE; fd++) {
+            writeFile(u.u_ofile, fd, out);
+        }
+
+        context.memory.checkpoint(out);
+        Set<Integer> breaks = context.breakpoints.addresses();
+        out.writeInt(breaks.size());
+        for (int addr : breaks) {
+            out.writeInt(addr);
+        }
+    }
+
+    private static void writeFile(FileItem[] ofile, int fd, DataOutputStream out) throws IOException {
+        FileItem fp = ofile[fd];
+        if (fp == null || fp.isPipe()) {
+            out.writeByte(ClosedFile);
+            return;
+        }
+        for (int i = 0; i < fd; i++) {
+            if (ofile[i] == fp) {
+                out.writeByte(SharedFile);
+                out.writeByte(i);
+                return;
+            }
+        }
+        int console = Arrays.asList(FileItem.stdin, FileItem.stdout, FileItem.stderr).indexOf(fp);
+        if (console >= 0) {
+            out.writeByte(ConsoleFile);
+            out.writeByte(console);
+            return;
+        }
+        out.writeByte(PathFile);
+        out.writeUTF(fp.getPath().toString());
+        out.writeByte(fp.getMode());
+        out.writeLong(fp.position());
+    }
+
+    private static void read(Context context, DataInputStream in) throws IOException {
+        for (int i = 0; i < context.register.length; i++) {
+            context.register[i] = in.readInt();
+        }
+        context.psl = in.readInt();
+
+        Context.User u = context.u;
+        u.u_procp.restorePid(in.readShort());
+        u.u_uid = in.readShort();
+        u.u_gid = in.readShort();
+        u.u_ruid = in.readShort();
+        u.u_rgid = in.readShort();
+        u.u_cmask = in.readShort();
+        u.u_cdir = Paths.get(in.readUTF());
+        for (int i = 0; i < NSIG; i++) {
+            u.u_signal[i] = in.readInt();
+        }
+        for (int fd = 0; fd < NOFILE; fd++) {
+            u.u_ofile[fd] = readFile(u.u_ofile, in);
+        }
+
+        context.memory.restore(in);
+        List<Integer> breaks = new ArrayList<>();
+        for (int n = in.readInt(); n > 0; n--) {
+            breaks.add(in.readInt());
+        }
+        context.breakpoints.reinstall(context.memory, breaks);
+    }
+
+    private static FileItem readFile(FileItem[] ofile, DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+        case ConsoleFile:
+            return new FileItem[] {FileItem.stdin, FileItem.stdout, FileItem.stderr}[in.readByte()];
+        case SharedFile:
+            FileItem fp = ofile[in.readByte()];
+            if (fp != null) {
+                fp.addReference();
+            }
+            return fp;
+        case PathFile:
+            String fname = in.readUTF();
+            int mode = in.readByte();
+            long offset = in.readLong();
+            try {
+                fp = FileItem.open(fname, mode);
+                fp.seek((int)offset, 0);
+                return fp;
+            } catch (FileItemException e) {
+                System.err.println("Checkpoint: can't reopen " + fname);
+                return null;
+            }
+        default:
+            return null;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package vax_interpreter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -18,6 +22,12 @@ class Context {
     public int psl;
     public final Memory memory;
     public final User u;
+    private final ReturnStack returns = new ReturnStack();
+    public final Breakpoints breakpoints;
+    // the instruction being executed
+    public Instruction instruction;
+    // register numbers selected by each PUSHR/POPR/entry mask, filled on first use
+    private static final int[][] maskRegisters = new int[1 << 15][];
 
     public Flag flagC = new Flag(0);
     public Flag flagV = new Flag(1);
@@ -32,6 +42,7 @@ class Context {
     public Context() {
         memory = new Memory();
         u = new User();
+        breakpoints = new Breakpoints();
     }
 
     public Context(Context src) {
@@ -39,23 +50,29 @@ class Context {
         psl = src.psl;
         memory = new Memory(src.memory);
         u = new User(src.u);
+        breakpoints = new Breakpoints(src.breakpoints);
     }
 
     public int pc() {
         return register[PC];
     }
 
-    public IntData getRegisterValue(int regNum, DataType type) {
+    public NumData getRegisterValue(int regNum, DataType type) {
         if (type.size >= 4) {
-            ByteBuffer bbuf = ByteBuffer.allocate(type.size).order(ByteOrder.LITTLE_ENDIAN);
-            for (int i = 0; i < type.size; i += 4) {
-                if (regNum <= PC) {
-                    bbuf.putInt(register[regNum++]);
+            long raw = 0;
+            long rawHigh = 0;
+            for (int i = 0; i < type.size >> 2 && regNum + i <= PC; i++) {
+                long word = register[regNum + i] & 0xffffffffL;
+                if (i < 2) {
+                    raw |= word << (i << 5);
                 } else {
-                    bbuf.putInt(0);
+                    rawHigh |= word << ((i - 2) << 5);
                 }
             }
-            return new IntData(bbuf.array(), type);
+            if (type.isFloatDataType()) {
+                return FloatData.fromRawBits(raw, rawHigh, type);
+            }
+            return IntData.fromRawBits(raw, rawHigh, type);
         } else {
             return new IntData(register[regNum], type);
         }
@@ -63,12 +80,8 @@ class Context {
 
     public void setRegisterValue(int regNum, NumData val) {
         if (val.size() >= 4) {
-            ByteBuffer bbuf = ByteBuffer.wrap(val.bytes()).order(ByteOrder.LITTLE_ENDIAN);
-            for (int i = 0; i < val.size(); i += 4) {
-                if (regNum > PC) {
-                    break;
-                }
-                register[regNum++] = bbuf.getInt();
+            for (int i = 0; i < val.size() >> 2 && regNum + i <= PC; i++) {
+                register[regNum + i] = (int)(val.rawLong(i >> 1) >>> ((i & 1) << 5));
             }
         } else {
             IntData intval = (IntData)val;
@@ -79,7 +92,8 @@ class Context {
     }
 
     public void push(int val) {
-        push(new IntData(val));
+        register[SP] -= 4;
+        memory.storeLongword(register[SP], val);
     }
 
     public void push(NumData val) {
@@ -89,14 +103,73 @@ class Context {
     }
 
     public int pop() {
-        IntData val = memory.loadInt(register[SP], DataType.L);
+        int val = memory.loadLongword(register[SP]);
         register[SP] += 4;
-        return val.sint();
+        return val;
+    }
+
+    /**
+     * Pushes the registers selected by mask (R0-R14) as PUSHR does, with
+     * the lowest-numbered register at the lowest address.
+     */
+    public void pushRegisters(int mask) {
+        int[] regs = decodeMask(mask);
+        int sp = register[SP] - (regs.length << 2);
+        memory.storeRegisters(sp, register, regs);
+        register[SP] = sp;
+    }
+
+    /**
+     * Pops the registers selected by mask (R0-R14) as POPR does.
+     */
+    public void popRegisters(int mask) {
+        int[] regs = decodeMask(mask);
+        int sp = register[SP] + (regs.length << 2);
+        memory.loadRegisters(register[SP], register, regs);
+        if ((mask & 1 << SP) == 0) {
+            register[SP] = sp;
+        }
+    }
+
+    private static int[] decodeMask(int mask) {
+        mask &= 0x7fff;
+        int[] regs = maskRegisters[mask];
+        if (regs == null) {
+            regs = new int[Integer.bitCount(mask)];
+            for (int i = 0, n = 0; i < SP + 1; i++) {
+                if ((mask & 1 << i) != 0) {
+                    regs[n++] = i;
+                }
+            }
+            maskRegisters[mask] = regs;
+        }
+        return regs;
+    }
+
+    /**
+     * Pushes the PC as the return address of JSB/BSBB/BSBW.
+     */
+    public void pushReturnAddress() {
+        push(register[PC]);
+        returns.push(register[SP], register[PC]);
+    }
+
+    /**
+     * Pops the return address for RSB. The recorded address is used while
+     * its stack slot is known to be unchanged.
+     */
+    public int popReturnAddress() {
+        if (returns.predicts(register[SP])) {
+            register[SP] += 4;
+            return returns.pop();
+        }
+        returns.clear();
+        return pop();
     }
 
     public int readText() {
         if (pc() < memory.textSize) {
-            return memory.loadInt(register[PC]++, DataType.B).uint();
+            return memory.loadByte(register[PC]++) & 0xff;
         } else {
             return -1;
         }
@@ -104,23 +177,253 @@ class Context {
 
     public int lookAhead() {
         if (pc() < memory.textSize) {
-            return memory.loadInt(pc(), DataType.B).uint();
+            return memory.loadByte(pc()) & 0xff;
         } else {
             return -1;
         }
     }
 
     class Memory {
-        private final byte[] mem = new byte[MEM_SIZE];
+        // each table maps 1 MB of the address space
+        private static final int TableShift = 20;
+        private static final int TableMask = (1 << TableShift - PAGE_SHIFT) - 1;
+        private final Page[][] tables = new Page[1 << 32 - TableShift][];
         public int textSize;
+        // the file the text was loaded from, which keys SharedText
+        private String textPath;
+        private int dataStart;
+        // end of the data segment, moved by sbreak
+        private int brk;
+        // pages deflated by MemoryCompressor, by address; unmapped until used
+        private final Map<Integer, byte[]> packed = new HashMap<>();
+        // when the process blocked in a system call, or 0 while it runs
+        private long blockedSince;
+        // set while MemoryCompressor may pack pages of this memory;
+        // guarded by Context.class
+        private boolean compressing;
         private static final int AoutHeaderSize = 32;
         private static final int SegUnitSize = 0x200;
+        private static final int NlistSize = 16;
+        private static final int N_TEXT = 04;
+        // snapshot of the last SCANC/SPANC/MOVTC table, dropped when overwritten
+        private int tableAddr;
+        private byte[] table;
+
+        Memory() {
+            PageMerger.track(this);
+        }
 
-        Memory() {}
-
+        // shares every page with srcMem until one of them stores into it
         Memory(Memory srcMem) {
-            System.arraycopy(srcMem.mem, 0, mem, 0, mem.length);
+            PageMerger.track(this);
+            for (int t = 0; t < tables.length; t++) {
+                Page[] src = srcMem.tables[t];
+                if (src == null) {
+                    continue;
+                }
+                tables[t] = new Page[src.length];
+                for (int i = 0; i < src.length; i++) {
+                    if (src[i] != null) {
+                        tables[t][i] = src[i].share();
+                    }
+                }
+            }
             textSize = srcMem.textSize;
+            textPath = srcMem.textPath;
+            dataStart = srcMem.dataStart;
+            brk = srcMem.brk;
+            // packed bytes are never modified, so both can keep them
+            packed.putAll(srcMem.packed);
+        }
+
+        /**
+         * Writes the segment layout, the text and every page in use above
+         * it; pages that were never stored into are left out.
+         */
+        void checkpoint(DataOutput out) throws IOException {
+            out.writeUTF(textPath);
+            out.writeInt(textSize);
+            out.writeInt(dataStart);
+            out.writeInt(brk);
+            // the image as loaded, without the breakpoints planted in it
+            out.write(breakpoints.unpatch(copyOut(0, textSize)));
+
+            SortedSet<Integer> addrs = new TreeSet<>(Integer::compareUnsigned);
+            addrs.addAll(packed.keySet());
+            forEachPage((addr, page) -> {
+                if (Integer.compareUnsigned(addr, dataStart) >= 0) {
+                    addrs.add(addr);
+                }
+            });
+            out.writeInt(addrs.size());
+            for (int addr : addrs) {
+                out.writeInt(addr);
+                out.write(copyOut(addr, PAGE_SIZE));
+            }
+        }
+
+        /**
+         * Replaces this memory with the one written by checkpoint.
+         */
+        void restore(DataInput in) throws IOException {
+            unmapAll();
+            textPath = in.readUTF();
+            textSize = in.readInt();
+            dataStart = in.readInt();
+            brk = in.readInt();
+            byte[] text = new byte[textSize];
+            in.readFully(text);
+            mapText(SharedText.get(textPath, text));
+            returns.clear();
+            table = null;
+
+            byte[] bytes = new byte[PAGE_SIZE];
+            for (int n = in.readInt(); n > 0; n--) {
+                int addr = in.readInt();
+                in.readFully(bytes);
+                copyIn(addr, bytes, PAGE_SIZE);
+            }
+        }
+
+        /**
+         * Releases the pages of an exited process.
+         */
+        public void release() {
+            unmapAll();
+            PageMerger.untrack(this);
+        }
+
+        /**
+         * Calls action with the address of every mapped page and the page.
+         * Used by PageMerger without holding Context.class, so a page seen
+         * here may already have been replaced.
+         */
+        void forEachPage(BiConsumer<Integer, Page> action) {
+            for (int t = 0; t < tables.length; t++) {
+                Page[] table = tables[t];
+                if (table == null) {
+                    continue;
+                }
+                for (int i = 0; i < table.length; i++) {
+                    Page page = table[i];
+                    if (page != null) {
+                        action.accept(t << TableShift | i << PAGE_SHIFT, page);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Maps into in place of page at addr when both still hold the same
+         * bytes, or unmaps page when into is null and page is all zeros.
+         * Called holding Context.class.
+         */
+        boolean merge(int addr, Page page, Page into) {
+            if (lookup(addr) != page || page.isReadOnly()) {
+                return false;
+            }
+            if (into == null ? !page.isZero() : !into.isMapped() || !page.sameAs(into)) {
+                return false;
+            }
+            setPage(addr, into == null ? null : into.share());
+            page.release();
+            return true;
+        }
+
+        /**
+         * Returns how long the process has been blocked, counting from the
+         * first call since it last woke up.
+         */
+        long blockedMillis() {
+            long now = System.currentTimeMillis();
+            if (blockedSince == 0) {
+                blockedSince = now;
+            }
+            return now - blockedSince;
+        }
+
+        boolean startCompression() {
+            if (compressing) {
+                return false;
+            }
+            compressing = true;
+            return true;
+        }
+
+        /**
+         * Marks the process as running again and stops MemoryCompressor
+         * from packing any more of its pages.
+         */
+        void wake() {
+            blockedSince = 0;
+            stopCompression();
+        }
+
+        /**
+         * Stops MemoryCompressor from packing any more pages. Called as
+         * soon as a blocked process returns from its wait, before it
+         * touches memory; the process still counts as blocked until its
+         * system call returns.
+         */
+        void stopCompression() {
+            compressing = false;
+        }
+
+        /**
+         * Replaces the private page at addr with its bytes packed by deflate,
+         * unless the process has woken up or the page has changed meanwhile.
+         * Called by MemoryCompressor, which deflates without holding
+         * Context.class; returns whether the page was packed.
+         */
+        boolean pack(int addr, Page page, UnaryOperator<byte[]> deflate) {
+            byte[] bytes = new byte[PAGE_SIZE];
+            synchronized (Context.class) {
+                if (!canPack(addr, page)) {
+                    return false;
+                }
+                page.get(0, bytes, 0, PAGE_SIZE);
+            }
+            byte[] deflated = deflate.apply(bytes);
+            if (deflated == null) {
+                return false;
+            }
+            synchronized (Context.class) {
+                if (!canPack(addr, page) || !holds(page, bytes)) {
+                    return false;
+                }
+                packed.put(addr, deflated);
+                setPage(addr, null);
+                page.release();
+                return true;
+            }
+        }
+
+        private boolean canPack(int addr, Page page) {
+            return compressing && lookup(addr) == page && page.isPrivate();
+        }
+
+        // the process may have woken, stored and blocked again since the copy
+        private boolean holds(Page page, byte[] bytes) {
+            byte[] now = new byte[PAGE_SIZE];
+            page.get(0, now, 0, PAGE_SIZE);
+            return Arrays.equals(now, bytes);
+        }
+
+        /**
+         * Moves the end of the data segment to addr, as sbreak does.
+         * Pages given back are unmapped, so growing over them again
+         * yields zeros.
+         */
+        public boolean setBreak(int addr) {
+            if (Integer.compareUnsigned(addr, MAXDSIZ) > 0) {
+                return false;
+            }
+            addr = Math.max(addr, dataStart);
+            if (addr < brk) {
+                unmap(pageRound(addr), pageRound(brk));
+            }
+            brk = addr;
+            return true;
         }
 
         public void setArgs(List<String> argStrs) {
@@ -130,33 +433,33 @@ class Context {
             }
 
             nChars = nChars + (NBPW - 1) & ~(NBPW - 1);
-            int ucp = MEM_SIZE - nChars - NBPW;
+            int ucp = USRSTACK - nChars - NBPW;
             int ap = ucp - (argStrs.size() + 3) * NBPW;
             register[SP] = ap;
-            store(ap, new IntData(argStrs.size()));
+            storeLongword(ap, argStrs.size());
             ap += NBPW;
             for (String str: argStrs) {
-                store(ap, new IntData(ucp));
+                storeLongword(ap, ucp);
                 ap += NBPW;
                 byte[] strb = str.getBytes(StandardCharsets.US_ASCII);
                 byte[] arg = Arrays.copyOf(strb, strb.length + 1);
                 storeBytes(ucp, arg, arg.length);
                 ucp += arg.length;
             }
-            store(ap, new IntData(0));
+            storeLongword(ap, 0);
             ap += NBPW;
-            store(ucp, new IntData(0));
+            storeLongword(ucp, 0);
 
             register[PC] = 2; /* skip over entry mask */
         }
 
         public boolean loadTextfile(String path) throws IOException {
             try (InputStream in = new FileInputStream(path)) {
-                return loadAout(in);
+                return loadAout(in, path);
             }
         }
 
-        private boolean loadAout(InputStream in) throws IOException {
+        private boolean loadAout(InputStream in, String path) throws IOException {
             byte[] header = new byte[AoutHeaderSize];
             if (!readUntil(in, header, 0, AoutHeaderSize)) {
                 return false;
@@ -169,23 +472,60 @@ class Context {
             }
             int tsize = bbuf.getInt();
             int dsize = bbuf.getInt();
-
-            if (!readUntil(in, mem, 0, tsize)) {
+            int bsize = bbuf.getInt();
+            int ssize = bbuf.getInt();
+            bbuf.getInt();      // entry point
+            int trsize = bbuf.getInt();
+            int drsize = bbuf.getInt();
+
+            byte[] text = new byte[tsize];
+            byte[] data = new byte[dsize];
+            if (!readUntil(in, text, 0, tsize) || !readUntil(in, data, 0, dsize)) {
                 return false;
             }
 
+            // bss and stack start out unmapped and read as zeros
+            unmapAll();
             int tsegSize = ((tsize + SegUnitSize - 1) / SegUnitSize) * SegUnitSize;
-            if (!readUntil(in, mem, tsegSize, dsize)) {
-                return false;
-            }
-
-            // clear bss and stack
-            Arrays.fill(mem, tsegSize + dsize, MEM_SIZE, (byte)0);
+            dataStart = tsegSize;
+            brk = tsegSize + dsize + bsize;
+            mapText(SharedText.get(path, text));
+            copyIn(tsegSize, data, dsize);
+            returns.clear();
+            table = null;
 
             textSize = tsize;
+            textPath = path;
+            if (Breakpoints.isRequested()) {
+                breakpoints.install(this, readSymbols(in, trsize + drsize, ssize));
+            }
             return true;
         }
 
+        // text symbols of the image, which follow the relocation information
+        private Map<String, Integer> readSymbols(InputStream in, int relocSize, int symSize)
+            throws IOException {
+            Map<String, Integer> symbols = new HashMap<>();
+            byte[] buf = new byte[relocSize + symSize];
+            if (!readUntil(in, buf, 0, buf.length)) {
+                return symbols;
+            }
+
+            ByteBuffer bbuf = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+            for (int off = relocSize; off + NlistSize <= buf.length; off += NlistSize) {
+                if ((buf[off + 8] & 0x1e) != N_TEXT) {
+                    continue;
+                }
+                int nameLen = 0;
+                while (nameLen < 8 && buf[off + nameLen] != 0) {
+                    ++nameLen;
+                }
+                symbols.put(new String(buf, off, nameLen, StandardCharsets.US_ASCII),
+                            bbuf.getInt(off + 12));
+            }
+            return symbols;
+        }
+
         private boolean readUntil(InputStream in, byte[] b, int off, int len) throws IOException {
             int readCount = 0;
             while (readCount < len) {
@@ -198,54 +538,370 @@ class Context {
             return true;
         }
 
-        public NumData load(int rawAddr, DataType type) {
-            int addr = getMemAddress(rawAddr);
+        public NumData load(int addr, DataType type) {
+            long raw;
+            long rawHigh = 0;
+            switch (type.size) {
+            case 1:
+                raw = loadByte(addr) & 0xffL;
+                break;
+            case 2:
+                raw = loadWord(addr) & 0xffffL;
+                break;
+            case 4:
+                raw = loadLongword(addr) & 0xffffffffL;
+                break;
+            case 8:
+                raw = loadQuadword(addr);
+                break;
+            default:
+                raw = loadQuadword(addr);
+                rawHigh = loadQuadword(addr + 8);
+                break;
+            }
             if (type.isFloatDataType()) {
-                return new FloatData(Arrays.copyOfRange(mem, addr, addr + type.size),
-                                     type);
+                return FloatData.fromRawBits(raw, rawHigh, type);
             } else {
-                return new IntData(Arrays.copyOfRange(mem, addr, addr + type.size),
-                                   type);
+                return IntData.fromRawBits(raw, rawHigh, type);
             }
         }
 
-        public IntData loadInt(int rawAddr, DataType type) {
-            return (IntData)load(rawAddr, type);
+        public IntData loadInt(int addr, DataType type) {
+            return (IntData)load(addr, type);
         }
 
-        public FloatData loadFloat(int rawAddr, DataType type) {
-            return (FloatData)load(rawAddr, type);
+        public FloatData loadFloat(int addr, DataType type) {
+            return (FloatData)load(addr, type);
         }
 
-        public void store(int rawAddr, NumData val) {
-            int addr = getMemAddress(rawAddr);
-            System.arraycopy(val.bytes(), 0, mem, addr, val.size());
+        public void store(int addr, NumData val) {
+            byte[] old = watchedBytes(addr, val.size());
+            copyIn(addr, val.bytes(), val.size());
+            stored(addr, val.size(), old);
         }
 
-        public byte[] loadBytes(int rawAddr, int size) {
-            int addr = getMemAddress(rawAddr);
-            return Arrays.copyOfRange(mem, addr, addr + size);
+        public byte loadByte(int addr) {
+            return page(addr).getByte(addr & PAGE_MASK);
         }
 
-        public void storeBytes(int rawAddr, byte[] val, int size) {
-            int addr = getMemAddress(rawAddr);
-            System.arraycopy(val, 0, mem, addr, size);
+        public short loadWord(int addr) {
+            return (short)getWord(addr);
         }
 
-        public byte[] loadStringBytes(int rawAddr) {
-            int addr = getMemAddress(rawAddr);
-            int i = addr;
-            while (mem[i++] != 0) {}
-            return Arrays.copyOfRange(mem, addr, i);
+        public int loadLongword(int addr) {
+            return getLongword(addr);
         }
 
-        private int getMemAddress(int addr) {
-            if (addr >= 0x7fffff00) {
-                return MEM_SIZE - (int)(0x80000000L - addr);
+        public long loadQuadword(int addr) {
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 8) {
+                return page(addr).getQuadword(off);
+            }
+            return getSpan(addr, 8);
+        }
+
+        public void storeByte(int addr, int val) {
+            byte[] old = watchedBytes(addr, 1);
+            writablePage(addr).putByte(addr & PAGE_MASK, (byte)val);
+            stored(addr, 1, old);
+        }
+
+        public void storeWord(int addr, int val) {
+            byte[] old = watchedBytes(addr, 2);
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 2) {
+                writablePage(addr).putWord(off, (short)val);
             } else {
-                return addr;
+                putSpan(addr, 2, val);
             }
+            stored(addr, 2, old);
         }
+
+        public void storeLongword(int addr, int val) {
+            byte[] old = watchedBytes(addr, 4);
+            putLongword(addr, val);
+            stored(addr, 4, old);
+        }
+
+        public void storeQuadword(int addr, long val) {
+            byte[] old = watchedBytes(addr, 8);
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 8) {
+                writablePage(addr).putQuadword(off, val);
+            } else {
+                putSpan(addr, 8, val);
+            }
+            stored(addr, 8, old);
+        }
+
+        /**
+         * Stores register[regs[i]] to consecutive longwords from addr.
+         */
+        public void storeRegisters(int addr, int[] register, int[] regs) {
+            byte[] old = watchedBytes(addr, regs.length << 2);
+            for (int i = 0; i < regs.length; i++) {
+                putLongword(addr + (i << 2), register[regs[i]]);
+            }
+            stored(addr, regs.length << 2, old);
+        }
+
+        /**
+         * Loads consecutive longwords from addr into register[regs[i]].
+         */
+        public void loadRegisters(int addr, int[] register, int[] regs) {
+            for (int i = 0; i < regs.length; i++) {
+                register[regs[i]] = getLongword(addr + (i << 2));
+            }
+        }
+
+        /**
+         * Atomically sets bits in the byte at addr and returns its old value.
+         */
+        public int getAndSetBits(int addr, int bits) {
+            byte[] watched = watchedBytes(addr, 1);
+            int old = writablePage(addr).getAndSetBits(addr & PAGE_MASK, bits);
+            stored(addr, 1, watched);
+            return old;
+        }
+
+        /**
+         * Atomically clears bits in the byte at addr and returns its old value.
+         */
+        public int getAndClearBits(int addr, int bits) {
+            byte[] watched = watchedBytes(addr, 1);
+            int old = writablePage(addr).getAndClearBits(addr & PAGE_MASK, bits);
+            stored(addr, 1, watched);
+            return old;
+        }
+
+        /**
+         * Atomically adds val to the aligned word at addr and returns its old value.
+         */
+        public short getAndAddWord(int addr, short val) {
+            byte[] watched = watchedBytes(addr, 2);
+            short old = writablePage(addr).getAndAddWord(addr & PAGE_MASK, val);
+            stored(addr, 2, watched);
+            return old;
+        }
+
+        public byte[] loadBytes(int addr, int size) {
+            return copyOut(addr, size);
+        }
+
+        public void storeBytes(int addr, byte[] val, int size) {
+            byte[] old = watchedBytes(addr, size);
+            copyIn(addr, val, size);
+            stored(addr, size, old);
+        }
+
+        /**
+         * Returns the 256-byte translation table at addr. The array is
+         * shared and must not be modified.
+         */
+        public byte[] loadTable(int addr) {
+            if (table == null || tableAddr != addr) {
+                table = copyOut(addr, 256);
+                tableAddr = addr;
+            }
+            return table;
+        }
+
+        // the bytes about to be overwritten when they lie on a watched page
+        private byte[] watchedBytes(int addr, int size) {
+            return Watchpoints.isWatched(addr, size) ? copyOut(addr, size) : null;
+        }
+
+        private void stored(int addr, int size, byte[] old) {
+            returns.stored(addr, size);
+            if (table != null && addr < tableAddr + 256 && addr + size > tableAddr) {
+                table = null;
+            }
+            if (old != null) {
+                Watchpoints.report(Context.this, addr, old, copyOut(addr, size));
+            }
+        }
+
+        public byte[] loadStringBytes(int addr) {
+            int end = addr;
+            while (page(end).getByte(end & PAGE_MASK) != 0) {
+                ++end;
+            }
+            return copyOut(addr, end + 1 - addr);
+        }
+
+        // P0 up to the break and P1 down to the stack limit are accessible
+        private boolean isValid(int addr) {
+            return addr >= 0 && (addr < pageRound(brk) || addr >= USRSTACK - MAXSSIZ);
+        }
+
+        private int pageRound(int addr) {
+            return addr + PAGE_MASK & ~PAGE_MASK;
+        }
+
+        // the page holding addr; untouched pages read as zeros
+        private Page page(int addr) {
+            Page page = lookup(addr);
+            if (page == null) {
+                page = unpack(addr);
+                if (page == null) {
+                    assert isValid(addr) : "Segmentation fault";
+                    return Page.ZERO;
+                }
+            }
+            return page;
+        }
+
+        // maps the page at addr back in if it was packed
+        private Page unpack(int addr) {
+            if (packed.isEmpty()) {
+                return null;
+            }
+            byte[] deflated = packed.remove(addr & ~PAGE_MASK);
+            if (deflated == null) {
+                return null;
+            }
+            Page page = setPage(addr, Page.allocate());
+            MemoryCompressor.inflate(deflated, page);
+            return page;
+        }
+
+        private Page lookup(int addr) {
+            Page[] table = tables[addr >>> TableShift];
+            return table == null ? null : table[addr >>> PAGE_SHIFT & TableMask];
+        }
+
+        private Page map(int addr) {
+            assert isValid(addr) : "Segmentation fault";
+            return setPage(addr, Page.allocate());
+        }
+
+        private Page setPage(int addr, Page page) {
+            Page[] table = tables[addr >>> TableShift];
+            if (table == null) {
+                table = tables[addr >>> TableShift] = new Page[TableMask + 1];
+            }
+            return table[addr >>> PAGE_SHIFT & TableMask] = page;
+        }
+
+        private void unmapAll() {
+            unmap(0, USRSTACK);
+            Arrays.fill(tables, null);
+        }
+
+        // unmaps the pages in [from, to); both are page aligned
+        private void unmap(int from, int to) {
+            if (!packed.isEmpty()) {
+                packed.keySet().removeIf(addr -> Integer.compareUnsigned(addr - from, to - from) < 0);
+            }
+            for (int addr = from; Integer.compareUnsigned(addr, to) < 0; addr += PAGE_SIZE) {
+                Page[] table = tables[addr >>> TableShift];
+                if (table == null) {
+                    // skip to the next table
+                    addr = (addr | (1 << TableShift) - 1) - PAGE_MASK;
+                    continue;
+                }
+                int i = addr >>> PAGE_SHIFT & TableMask;
+                if (table[i] != null) {
+                    table[i].release();
+                    table[i] = null;
+                }
+            }
+        }
+
+        // the page holding addr, mapped on the first store into it and
+        // copied first if another memory shares it
+        private Page writablePage(int addr) {
+            Page page = lookup(addr);
+            if (page == null) {
+                page = unpack(addr);
+                if (page == null) {
+                    return map(addr);
+                }
+            }
+            if (!page.isPrivate()) {
+                assert !page.isReadOnly() : "Access violation";
+                page = setPage(addr, page.copy());
+            }
+            return page;
+        }
+
+        private void mapText(Page[] text) {
+            for (int i = 0; i < text.length; i++) {
+                setPage(i << PAGE_SHIFT, text[i].share());
+            }
+        }
+
+        /**
+         * Replaces the text byte at addr with val in a private read-only
+         * copy of its page, as breakpoints are planted.
+         */
+        public void patchText(int addr, int val) {
+            Page page = page(addr).copy();
+            page.setReadOnly();
+            page.putByte(addr & PAGE_MASK, (byte)val);
+            setPage(addr, page);
+        }
+
+        private int getWord(int addr) {
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 2) {
+                return page(addr).getWord(off);
+            }
+            return (int)getSpan(addr, 2);
+        }
+
+        private int getLongword(int addr) {
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 4) {
+                return page(addr).getLongword(off);
+            }
+            return (int)getSpan(addr, 4);
+        }
+
+        private void putLongword(int addr, int val) {
+            int off = addr & PAGE_MASK;
+            if (off <= PAGE_SIZE - 4) {
+                writablePage(addr).putLongword(off, val);
+            } else {
+                putSpan(addr, 4, val);
+            }
+        }
+
+        // little-endian value of size bytes that cross a page boundary
+        private long getSpan(int addr, int size) {
+            long val = 0;
+            for (int i = size - 1; i >= 0; i--) {
+                int a = addr + i;
+                val = val << 8 | page(a).getByte(a & PAGE_MASK) & 0xff;
+            }
+            return val;
+        }
+
+        private void putSpan(int addr, int size, long val) {
+            for (int i = 0; i < size; i++, val >>>= 8) {
+                int a = addr + i;
+                writablePage(a).putByte(a & PAGE_MASK, (byte)val);
+            }
+        }
+
+        private byte[] copyOut(int addr, int size) {
+            byte[] dest = new byte[size];
+            for (int done = 0, len; done < size; done += len) {
+                int a = addr + done;
+                len = Math.min(size - done, PAGE_SIZE - (a & PAGE_MASK));
+                page(a).get(a & PAGE_MASK, dest, done, len);
+            }
+            return dest;
+        }
+
+        private void copyIn(int addr, byte[] src, int size) {
+            for (int done = 0, len; done < size; done += len) {
+                int a = addr + done;
+                len = Math.min(size - done, PAGE_SIZE - (a & PAGE_MASK));
+                writablePage(a).put(a & PAGE_MASK, src, done, len);
+            }
+        }
+
     }
 
     class Flag {
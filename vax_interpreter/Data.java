@@ -1,8 +1,6 @@
 package vax_interpreter;
 
 import java.util.*;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 abstract class NumData {
     protected byte[] bytes;
@@ -27,16 +25,44 @@ abstract class NumData {
         }
         return sb.toString();
     }
+
+    /**
+     * Returns the index-th little-endian quadword of the value, zero-padded.
+     */
+    public long rawLong(int index) {
+        long raw = 0;
+        for (int i = Math.min(bytes.length, (index + 1) << 3) - 1; i >= index << 3; i--) {
+            raw = raw << 8 | (bytes[i] & 0xff);
+        }
+        return raw;
+    }
+
+    // rawHigh holds bytes 8-15 of an octaword or H value
+    protected void setRawBits(long raw, long rawHigh) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)((i < 8 ? raw : rawHigh) >>> (i << 3));
+        }
+    }
+
+    public abstract boolean isNegValue();
+
+    public abstract boolean isZeroValue();
 }
 
 class IntData extends NumData {
+    private IntData(DataType tp) {
+        this.bytes = new byte[tp.size];
+        this.type = tp;
+    }
+
     public IntData(byte[] bytes, DataType tp) {
         this.bytes = Arrays.copyOf(bytes, tp.size);
         this.type = tp;
     }
 
     public IntData(int val, DataType tp) {
-        this(intToBytes(val), tp);
+        this(tp);
+        setRawBits(val & 0xffffffffL, 0);
     }
 
     public IntData(int val) {
@@ -44,15 +70,22 @@ class IntData extends NumData {
     }
 
     public IntData(long val, DataType tp) {
-        this(longToBytes(val), tp);
+        this(tp);
+        setRawBits(val, 0);
     }
 
     public IntData(long val) {
         this(val, DataType.Q);
     }
 
+    public static IntData fromRawBits(long raw, long rawHigh, DataType tp) {
+        IntData val = new IntData(tp);
+        val.setRawBits(raw, rawHigh);
+        return val;
+    }
+
     public int sint() {
-        return bytesToInt(bytes);
+        return (int)slong();
     }
 
     public int uint() {
@@ -61,7 +94,17 @@ class IntData extends NumData {
     }
 
     public long slong() {
-        return bytesToLong(bytes);
+        long raw = rawLong(0);
+        switch (bytes.length) {
+        case 1:
+            return (byte)raw;
+        case 2:
+            return (short)raw;
+        case 4:
+            return (int)raw;
+        default:
+            return raw;
+        }
     }
 
     public static IntData bitInvert(IntData src) {
@@ -96,40 +139,6 @@ class IntData extends NumData {
         }
         return true;
     }
-
-    private static int bytesToInt(byte[] bytes) {
-        ByteBuffer bbuf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
-        switch (bytes.length) {
-        case 1:
-            return bbuf.get();
-        case 2:
-            return bbuf.getShort();
-        default:
-            return bbuf.getInt();
-        }
-    }
-
-    private static long bytesToLong(byte[] bytes) {
-        ByteBuffer bbuf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
-        switch (bytes.length) {
-        case 1:
-            return bbuf.get();
-        case 2:
-            return bbuf.getShort();
-        case 4:
-            return bbuf.getInt();
-        default:
-            return bbuf.getLong();
-        }
-    }
-
-    private static byte[] intToBytes(int val) {
-        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(val).array();
-    }
-
-    private static byte[] longToBytes(long val) {
-        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(val).array();
-    }
 }
 
 class FloatData extends NumData {
@@ -138,62 +147,21 @@ class FloatData extends NumData {
         this.type = type;
     }
 
-    public FloatData(double val, DataType type) {
-        long longBits = Double.doubleToLongBits(val);
-        long sign = longBits >> 63;
-        long srcExponent = (longBits >> 52 & 0x7ff) - 1023;
-        long significand = longBits & 0xfffffffffffffL;
-        byte[] bytes;
-        if (srcExponent == 0 && significand == 0) {
-            bytes = new byte[type.size];
-        } else {
-            switch (type) {
-            case F:
-                long fexp = (srcExponent + 1 + 128) & 0xff;
-                int fval = (int)(sign << 15 |
-                                 fexp << 7 |
-                                 significand >> 45 & 0x7f |
-                                 significand >> 13 & 0xffff0000);
-                bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(fval).array();
-                break;
-            case D:
-                long dexp = (srcExponent + 1 + 128) & 0xff;
-                long dval = sign << 15 |
-                    dexp << 7 |
-                    significand >> 45 & 0x7f |
-                    significand >> 13 & 0xffff0000 |
-                    significand << 19 & 0xffff00000000L |
-                    significand << 51 & 0xffff000000000000L;
-                bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(dval).array();
-                break;
-            case G:
-                long gexp = (srcExponent + 1 + 1024) & 0x7ff;
-                long gval = sign << 15 |
-                    gexp << 4 |
-                    significand >> 48 & 0xf |
-                    significand >> 16 & 0xffff0000 |
-                    significand << 16 & 0xffff00000000L |
-                    significand << 48 & 0xffff000000000000L;
-                bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(gval).array();
-                break;
-            case H:
-                long hexp = (srcExponent + 1 + 16384) & 0x7fff;
-                long hlower = sign << 15 |
-                    hexp |
-                    significand >> 20 & 0xffff0000 |
-                    significand << 12 & 0xffff00000000L |
-                    significand << 44 & 0xffff000000000000L;
-                long hupper = significand << 12 & 0xffff;
-                bytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(hlower).putLong(hupper).array();
-                break;
-            default:
-                throw new RuntimeException("Invalid floating-point type");
-            }
-        }
-        this.bytes = bytes;
+    private FloatData(DataType type) {
+        this.bytes = new byte[type.size];
         this.type = type;
     }
 
+    public static FloatData valueOf(double val, DataType type) {
+        return FloatCalculator.valueOf(val, type);
+    }
+
+    public static FloatData fromRawBits(long raw, long rawHigh, DataType type) {
+        FloatData val = new FloatData(type);
+        val.setRawBits(raw, rawHigh);
+        return val;
+    }
+
     public static FloatData negativeFloat(FloatData src) {
         byte[] negBytes = Arrays.copyOf(src.bytes, src.bytes.length);
         if (!src.isZeroValue()) {
@@ -207,17 +175,18 @@ class FloatData extends NumData {
     }
 
     public boolean isZeroValue() {
+        int word = (bytes[0] & 0xff) | (bytes[1] & 0x7f) << 8;
         long s_exp;
         switch (type) {
         case F:
         case D:
-            s_exp = (bytes[0] | bytes[1] << 8) >> 7;
+            s_exp = word >> 7;
             break;
         case G:
-            s_exp = (bytes[0] | bytes[1] << 8) >> 4;
+            s_exp = word >> 4;
             break;
         case H:
-            s_exp = (bytes[0] | bytes[1] << 8);
+            s_exp = word;
             break;
         default:
             throw new RuntimeException("Invalid floating-point type");
@@ -217,6 +217,18 @@ class FileItem {
     public Path getPath() {
         return path;
     }
+
+    public int getMode() {
+        return f_flag;
+    }
+
+    public long position() throws IOException {
+        return chan.position();
+    }
+
+    public boolean isPipe() {
+        return chan instanceof PipeChannel;
+    }
 }
 
 class DirChannel implements SeekableByteChannel {
@@ -391,7 +403,7 @@ class PipeChannel implements SeekableByteChannel {
 
             try {
                 Context.class.notifyAll();
-                Context.class.wait();
+                Kernel.sleep();
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -429,7 +441,7 @@ class PipeChannel implements SeekableByteChannel {
                 // pipe is full
                 try {
                     Context.class.notifyAll();
-                    Context.class.wait();
+                    Kernel.sleep();
                 } catch (InterruptedException e) {
                     throw new RuntimeException(e);
                 }
@@ -0,0 +1,864 @@
+package vax_interpreter;
+
+/**
+ * Arithmetic and conversions on VAX F, D, G and H floating data.
+ *
+ * Each operand is unpacked once into a "logical" long: the 16-bit words of
+ * the raw value in significance order, so that the sign is bit 63, the
+ * exponent follows and the fraction fills the rest. F values are placed in
+ * the upper half and share the D layout. H values take a second logical
+ * long for the low-order fraction and are always calculated in software on
+ * 128-bit fractions held in pairs of longs.
+ *
+ * F values, and D/G values whose result is exact, are calculated on host
+ * doubles. Other D/G results go through the software path, which works on
+ * 64-bit fractions. Both paths round the VAX way: add one to the bit below
+ * the LSB and truncate.
+ */
+class FloatCalculator {
+    private static final long SIGN = 0x8000000000000000L;
+    private static final long FRAC52 = 0xfffffffffffffL;
+
+    public static FloatData add(FloatData arg1, FloatData arg2, Context context) {
+        DataType type = arg1.dataType();
+        if (type == DataType.H) {
+            return addH(arg1, arg2, false, context);
+        }
+        long a = operand(arg1, type);
+        long b = operand(arg2, type);
+        if (fitsDouble(a, type) && fitsDouble(b, type)) {
+            double x = toDouble(a, type);
+            double y = toDouble(b, type);
+            double sum = x + y;
+            double bb = sum - x;
+            if (type == DataType.F || (x - (sum - bb)) + (y - bb) == 0) {
+                return fromDouble(sum, type, context);
+            }
+        }
+        return addSoft(a, b, type, context);
+    }
+
+    public static FloatData sub(FloatData arg1, FloatData arg2, Context context) {
+        DataType type = arg1.dataType();
+        if (type == DataType.H) {
+            return addH(arg1, arg2, true, context);
+        }
+        long a = operand(arg1, type);
+        long b = negate(operand(arg2, type), type);
+        if (fitsDouble(a, type) && fitsDouble(b, type)) {
+            double x = toDouble(a, type);
+            double y = toDouble(b, type);
+            double diff = x + y;
+            double bb = diff - x;
+            if (type == DataType.F || (x - (diff - bb)) + (y - bb) == 0) {
+                return fromDouble(diff, type, context);
+            }
+        }
+        return addSoft(a, b, type, context);
+    }
+
+    public static FloatData mul(FloatData arg1, FloatData arg2, Context context) {
+        DataType type = arg1.dataType();
+        if (type == DataType.H) {
+            return mulH(arg1, arg2, context);
+        }
+        long a = operand(arg1, type);
+        long b = operand(arg2, type);
+        if (fitsDouble(a, type) && fitsDouble(b, type)) {
+            double x = toDouble(a, type);
+            double y = toDouble(b, type);
+            double prod = x * y;
+            if (type == DataType.F || Math.fma(x, y, -prod) == 0) {
+                return fromDouble(prod, type, context);
+            }
+        }
+        return mulSoft(a, b, type, context);
+    }
+
+    /**
+     * Returns the quotient, or null if the divisor is zero.
+     */
+    public static FloatData div(FloatData dividend, FloatData divisor, Context context) {
+        DataType type = dividend.dataType();
+        long a = operand(dividend, type);
+        long b = operand(divisor, type);
+        if (biasedExp(b, type) == 0) {
+            context.flagV.set();
+            context.flagC.clear();
+            return null;
+        }
+        if (type == DataType.H) {
+            return divH(dividend, divisor, context);
+        }
+        if (fitsDouble(a, type) && fitsDouble(b, type)) {
+            double x = toDouble(a, type);
+            double y = toDouble(b, type);
+            double quo = x / y;
+            if (type == DataType.F || Math.fma(-quo, y, x) == 0) {
+                return fromDouble(quo, type, context);
+            }
+        }
+        return divSoft(a, b, type, context);
+    }
+
+    public static void cmp(FloatData lhs, FloatData rhs, Context context) {
+        DataType type = lhs.dataType();
+        long a = operand(lhs, type);
+        long b = operand(rhs, type);
+        int c = Long.compare(orderKey(a, type), orderKey(b, type));
+        if (c == 0 && type == DataType.H && biasedExp(a, type) != 0) {
+            c = Long.compareUnsigned(lowLogical(lhs), lowLogical(rhs));
+            if (a < 0) {
+                c = -c;
+            }
+        }
+        context.flagN.set( c < 0 );
+        context.flagZ.set( c == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+    }
+
+    /**
+     * Multiplies muld by mulr extended with mulrx, stores the integer part of
+     * the product into intPart[0] and returns the fraction part.
+     */
+    public static FloatData emod(FloatData mulr, int mulrx, FloatData muld, int[] intPart,
+                                 Context context) {
+        DataType type = mulr.dataType();
+        long a = operand(mulr, type);
+        long b = operand(muld, type);
+        boolean neg = (a ^ b) < 0;
+        if (biasedExp(a, type) == 0 || biasedExp(b, type) == 0) {
+            intPart[0] = 0;
+            return zero(type, context);
+        }
+
+        long ma = fraction(a, type);
+        switch (type) {
+        case F:
+            ma |= (long)(mulrx & 0xff) << 32;
+            break;
+        case D:
+            ma |= mulrx & 0xff;
+            break;
+        default:
+            ma |= (mulrx & 0xffff) >>> 5;
+            break;
+        }
+        long mb = fraction(b, type);
+        long hi = unsignedMultiplyHigh(ma, mb);
+        long lo = ma * mb;
+        // product = 0.hi:lo * 2 ** e
+        int e = exponent(a, type) + exponent(b, type);
+
+        long intVal;
+        boolean overflow;
+        if (e <= 0) {
+            intVal = 0;
+            overflow = false;
+        } else {
+            intVal = e < 128 ? shiftRight128(hi, lo, 128 - e) : 0;
+            overflow = e > 64 || Long.compareUnsigned(intVal, neg ? 0x80000000L : 0x7fffffffL) > 0;
+            // keep the fraction part only
+            if (e < 64) {
+                hi = hi << e | lo >>> (64 - e);
+                lo <<= e;
+            } else if (e < 128) {
+                hi = lo << (e - 64);
+                lo = 0;
+            } else {
+                hi = lo = 0;
+            }
+            e = 0;
+        }
+        intPart[0] = (int)(neg ? -intVal : intVal);
+
+        FloatData fract;
+        if (hi == 0 && lo == 0) {
+            fract = zero(type, context);
+        } else {
+            if (hi == 0) {
+                hi = lo;
+                lo = 0;
+                e -= 64;
+            }
+            int n = Long.numberOfLeadingZeros(hi);
+            if (n > 0) {
+                hi = hi << n | lo >>> (64 - n);
+                lo <<= n;
+                e -= n;
+            }
+            fract = round(neg, e, hi | (lo != 0 ? 1 : 0), type, context);
+        }
+        context.flagV.set( overflow );
+        return fract;
+    }
+
+    /**
+     * Evaluates the polynomial at arg by Horner's rule (POLYF, POLYD, POLYG).
+     * coefs holds the highest-order coefficient first. Each product is
+     * truncated to 31 (F) or 63 (D, G) bits before the next coefficient is
+     * added, and each sum is rounded to the type.
+     * Returns null on floating overflow.
+     */
+    public static FloatData poly(FloatData arg, FloatData[] coefs, Context context) {
+        DataType type = arg.dataType();
+        long x = operand(arg, type);
+        long mx = biasedExp(x, type) == 0 ? 0 : fraction(x, type);
+        long keep = -(1L << (64 - (type == DataType.F ? 31 : 63)));
+
+        long r = operand(coefs[0], type);
+        FloatData result = addSoft(r, 0, type, context);
+        for (int i = 1; i < coefs.length; i++) {
+            long c = operand(coefs[i], type);
+            boolean neg = (r ^ x) < 0;
+            int e = exponent(r, type) + exponent(x, type);
+            long mp = 0;
+            if (biasedExp(r, type) != 0 && mx != 0) {
+                long mr = fraction(r, type);
+                long hi = unsignedMultiplyHigh(mr, mx);
+                long lo = mr * mx;
+                if (hi >= 0) {
+                    hi = hi << 1 | lo >>> 63;
+                    --e;
+                }
+                mp = hi & keep;
+            }
+            result = addFractions(neg, e, mp,
+                                  c < 0, exponent(c, type), biasedExp(c, type) == 0 ? 0 : fraction(c, type),
+                                  type, context);
+            if (result == null) {
+                return null;
+            }
+            r = toLogical(result.rawLong(0), type);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a longword integer to the floating type (CVTBF ... CVTLH).
+     */
+    public static FloatData fromInt(int val, DataType type, Context context) {
+        if (val == 0) {
+            return zero(type, context);
+        }
+        long mag = Math.abs((long)val);
+        int n = Long.numberOfLeadingZeros(mag);
+        return round(val < 0, 64 - n, mag << n, type, context);
+    }
+
+    /**
+     * Converts to the integer type, truncated or rounded (CVTFB ... CVTRHL).
+     * V is set when the value does not fit; the low-order bits are returned.
+     */
+    public static IntData toInt(FloatData src, DataType type, boolean round, Context context) {
+        DataType srcType = src.dataType();
+        long logical = operand(src, srcType);
+        long val = 0;
+        boolean overflow = false;
+        if (biasedExp(logical, srcType) != 0) {
+            int e = exponent(logical, srcType);
+            long m = fraction(src, logical, srcType);
+            if (e <= 0) {
+                // 0.m is at least one half
+                val = round && e == 0 ? 1 : 0;
+            } else if (e < 64) {
+                val = m >>> (64 - e);
+                if (round) {
+                    val += m >>> (63 - e) & 1;
+                }
+            } else {
+                overflow = true;
+                val = e < 128 ? m << (e - 64) : 0;
+            }
+            if (logical < 0) {
+                val = -val;
+            }
+        }
+        IntData dst = new IntData(val, type);
+        context.flagN.set( dst.isNegValue() );
+        context.flagZ.set( dst.isZeroValue() );
+        context.flagV.set( overflow || dst.slong() != val );
+        context.flagC.clear();
+        return dst;
+    }
+
+    /**
+     * Converts between floating types (CVTFD ... CVTHG).
+     * Returns null on floating overflow.
+     */
+    public static FloatData convert(FloatData src, DataType type, Context context) {
+        DataType srcType = src.dataType();
+        long logical = operand(src, srcType);
+        if (biasedExp(logical, srcType) == 0) {
+            return zero(type, context);
+        }
+        return round(logical < 0, exponent(logical, srcType), fraction(src, logical, srcType),
+                     type, context);
+    }
+
+    /**
+     * Returns the host double in the floating type, rounded the VAX way.
+     * Values out of range become zero or the reserved operand.
+     */
+    public static FloatData valueOf(double val, DataType type) {
+        long bits = Double.doubleToRawLongBits(val);
+        int biased = (int)(bits >>> 52 & 0x7ff);
+        long m = (bits & FRAC52) << 11;
+        if (biased != 0) {
+            m |= SIGN;
+        } else if (m != 0) {
+            // denormal
+            int n = Long.numberOfLeadingZeros(m);
+            m <<= n;
+            biased -= n - 1;
+        } else {
+            return toFloatData(0, 0, type);
+        }
+        long logical = roundLogical(bits < 0, biased - 1022, m, type);
+        return toFloatData(logical, m << 49, type);
+    }
+
+    private static long operand(FloatData val, DataType type) {
+        long logical = toLogical(val.rawLong(0), type);
+        assert !(logical < 0 && biasedExp(logical, type) == 0) : "Reserved operand fault";
+        return logical;
+    }
+
+    private static long lowLogical(FloatData val) {
+        return swapWords(val.rawLong(1));
+    }
+
+    static long toLogical(long raw, DataType type) {
+        if (type == DataType.F) {
+            return (long)Integer.rotateLeft((int)raw, 16) << 32;
+        } else {
+            return swapWords(raw);
+        }
+    }
+
+    static long fromLogical(long logical, DataType type) {
+        if (type == DataType.F) {
+            return Integer.rotateLeft((int)(logical >>> 32), 16) & 0xffffffffL;
+        } else {
+            return swapWords(logical);
+        }
+    }
+
+    private static long swapWords(long x) {
+        return x << 48 | (x & 0xffff0000L) << 16 | (x >>> 16 & 0xffff0000L) | x >>> 48;
+    }
+
+    private static int expShift(DataType type) {
+        switch (type) {
+        case G:
+            return 52;
+        case H:
+            return 48;
+        default:
+            return 55;
+        }
+    }
+
+    private static int expLimit(DataType type) {
+        switch (type) {
+        case G:
+            return 0x800;
+        case H:
+            return 0x8000;
+        default:
+            return 0x100;
+        }
+    }
+
+    private static int bias(DataType type) {
+        switch (type) {
+        case G:
+            return 1024;
+        case H:
+            return 16384;
+        default:
+            return 128;
+        }
+    }
+
+    private static int precision(DataType type) {
+        switch (type) {
+        case F:
+            return 24;
+        case D:
+            return 56;
+        case G:
+            return 53;
+        default:
+            return 113;
+        }
+    }
+
+    private static int biasedExp(long logical, DataType type) {
+        return (int)(logical >>> expShift(type)) & (expLimit(type) - 1);
+    }
+
+    // value = 0.fraction * 2 ** exponent
+    private static int exponent(long logical, DataType type) {
+        return biasedExp(logical, type) - bias(type);
+    }
+
+    private static long fraction(long logical, DataType type) {
+        return SIGN | (logical << (64 - expShift(type))) >>> 1;
+    }
+
+    // the leading 64 bits of an H fraction continue into the low logical word
+    private static long fraction(FloatData val, long logical, DataType type) {
+        long m = fraction(logical, type);
+        if (type == DataType.H) {
+            m |= lowLogical(val) >>> 49;
+        }
+        return m;
+    }
+
+    private static long negate(long logical, DataType type) {
+        return biasedExp(logical, type) == 0 ? logical : logical ^ SIGN;
+    }
+
+    private static long orderKey(long logical, DataType type) {
+        if (biasedExp(logical, type) == 0) {
+            return 0;
+        }
+        return logical < 0 ? -(logical & ~SIGN) : logical;
+    }
+
+    // F values always, D values with a 53-bit fraction, and G values far enough
+    // from the double range limits that error terms stay exact.
+    private static boolean fitsDouble(long logical, DataType type) {
+        switch (type) {
+        case F:
+            return true;
+        case D:
+            return (logical & 7) == 0;
+        case G:
+            int biased = biasedExp(logical, type);
+            return biased == 0 || Math.abs(biased - 1024) < 480;
+        default:
+            return false;
+        }
+    }
+
+    private static double toDouble(long logical, DataType type) {
+        int biased = biasedExp(logical, type);
+        if (biased == 0) {
+            return 0.0;
+        }
+        if (type == DataType.G) {
+            return Double.longBitsToDouble(logical - (2L << 52));
+        }
+        return Double.longBitsToDouble((logical & SIGN) |
+                                       (long)(biased + 894) << 52 |
+                                       (logical >>> 3 & FRAC52));
+    }
+
+    private static FloatData fromDouble(double val, DataType type, Context context) {
+        if (val == 0) {
+            return zero(type, context);
+        }
+        long bits = Double.doubleToRawLongBits(val);
+        int e = (int)(bits >>> 52 & 0x7ff) - 1022;
+        long m = SIGN | (bits & FRAC52) << 11;
+        return round(bits < 0, e, m, type, context);
+    }
+
+    private static FloatData addSoft(long a, long b, DataType type, Context context) {
+        return addFractions(a < 0, exponent(a, type), biasedExp(a, type) == 0 ? 0 : fraction(a, type),
+                            b < 0, exponent(b, type), biasedExp(b, type) == 0 ? 0 : fraction(b, type),
+                            type, context);
+    }
+
+    // Adds 0.ma * 2 ** ea and 0.mb * 2 ** eb, where a zero fraction is zero,
+    // and rounds the sum. ma and mb are normalized.
+    private static FloatData addFractions(boolean negA, int ea, long ma,
+                                          boolean negB, int eb, long mb,
+                                          DataType type, Context context) {
+        if (ma == 0) {
+            return mb == 0 ? zero(type, context) : round(negB, eb, mb, type, context);
+        } else if (mb == 0) {
+            return round(negA, ea, ma, type, context);
+        }
+
+        if (ea < eb) {
+            boolean negTmp = negA;
+            negA = negB;
+            negB = negTmp;
+            int eTmp = ea;
+            ea = eb;
+            eb = eTmp;
+            long mTmp = ma;
+            ma = mb;
+            mb = mTmp;
+        }
+        // bit 0 of ma and mb is clear: fractions have at most 56 bits and
+        // POLY products 63, so the sticky bit sits below every one of them
+        mb = align(mb, ea - eb);
+        boolean neg = negA;
+        long sum;
+        if (negA == negB) {
+            sum = ma + mb;
+            if (Long.compareUnsigned(sum, ma) < 0) {
+                // carry out of the top bit
+                sum = SIGN | sum >>> 1 | sum & 1;
+                ++ea;
+            }
+        } else {
+            sum = ma - mb;
+            if (Long.compareUnsigned(ma, mb) < 0) {
+                sum = -sum;
+                neg = !neg;
+            }
+        }
+        if (sum == 0) {
+            return zero(type, context);
+        }
+        int n = Long.numberOfLeadingZeros(sum);
+        return round(neg, ea - n, sum << n, type, context);
+    }
+
+    // m shifted right by d, with a sticky bit standing for the bits shifted out
+    private static long align(long m, int d) {
+        if (d == 0) {
+            return m;
+        } else if (d >= 64) {
+            return 1;
+        }
+        boolean sticky = (m & ((1L << d) - 1)) != 0;
+        return m >>> d | (sticky ? 1 : 0);
+    }
+
+    private static FloatData mulSoft(long a, long b, DataType type, Context context) {
+        if (biasedExp(a, type) == 0 || biasedExp(b, type) == 0) {
+            return zero(type, context);
+        }
+        long ma = fraction(a, type);
+        long mb = fraction(b, type);
+        long hi = unsignedMultiplyHigh(ma, mb);
+        long lo = ma * mb;
+        int e = exponent(a, type) + exponent(b, type);
+        if (hi >= 0) {
+            hi = hi << 1 | lo >>> 63;
+            lo <<= 1;
+            --e;
+        }
+        return round((a ^ b) < 0, e, hi | (lo != 0 ? 1 : 0), type, context);
+    }
+
+    private static FloatData divSoft(long a, long b, DataType type, Context context) {
+        if (biasedExp(a, type) == 0) {
+            return zero(type, context);
+        }
+        long rem = fraction(a, type) >>> 1;
+        long divisor = fraction(b, type) >>> 1;
+        long quo = 0;
+        for (int i = 0; i < 64; i++) {
+            quo <<= 1;
+            if (Long.compareUnsigned(rem, divisor) >= 0) {
+                rem -= divisor;
+                quo |= 1;
+            }
+            rem <<= 1;
+        }
+        int n = Long.numberOfLeadingZeros(quo);
+        int e = exponent(a, type) - exponent(b, type) + 1 - n;
+        return round((a ^ b) < 0, e, quo << n | (rem != 0 ? 1 : 0), type, context);
+    }
+
+    private static FloatData zero(DataType type, Context context) {
+        context.flagN.clear();
+        context.flagZ.set();
+        context.flagV.clear();
+        context.flagC.clear();
+        return toFloatData(0, 0, type);
+    }
+
+    /**
+     * Rounds 0.m * 2 ** e to the precision of the type and packs it.
+     * Returns null on floating overflow; an underflow produces zero.
+     */
+    private static FloatData round(boolean neg, int e, long m, DataType type, Context context) {
+        if (type == DataType.H) {
+            return roundH(neg, e, m, 0, context);
+        }
+        long logical = roundLogical(neg, e, m, type);
+        if (logical == SIGN) {
+            context.flagV.set();
+            context.flagC.clear();
+            return null;
+        }
+        if (logical == 0) {
+            return zero(type, context);
+        }
+        context.flagN.set( neg );
+        context.flagZ.clear();
+        context.flagV.clear();
+        context.flagC.clear();
+        return toFloatData(logical, m << 49, type);
+    }
+
+    // Returns the (high) logical word; overflow gives the reserved operand.
+    // A 64-bit fraction always fits an H value, whose low word is m << 49.
+    private static long roundLogical(boolean neg, int e, long m, DataType type) {
+        if (type != DataType.H) {
+            int p = precision(type);
+            long rounded = m + (1L << (63 - p));
+            if (Long.compareUnsigned(rounded, m) < 0) {
+                rounded = SIGN;
+                ++e;
+            }
+            m = rounded & -(1L << (64 - p));
+        }
+
+        int biased = e + bias(type);
+        if (biased >= expLimit(type)) {
+            return SIGN;
+        }
+        if (biased <= 0) {
+            return 0;
+        }
+        int shift = expShift(type);
+        return (neg ? SIGN : 0) | (long)biased << shift | (m << 1) >>> (64 - shift);
+    }
+
+    private static FloatData toFloatData(long logical, long lowLogical, DataType type) {
+        if (type == DataType.H) {
+            return FloatData.fromRawBits(swapWords(logical), swapWords(lowLogical), type);
+        }
+        return FloatData.fromRawBits(fromLogical(logical, type), 0, type);
+    }
+
+    private static FloatData addH(FloatData arg1, FloatData arg2, boolean subtract,
+                                  Context context) {
+        long a = operand(arg1, DataType.H);
+        long b = operand(arg2, DataType.H);
+        long aLow = lowLogical(arg1);
+        long bLow = lowLogical(arg2);
+        if (subtract) {
+            b = negate(b, DataType.H);
+        }
+        if (biasedExp(a, DataType.H) == 0) {
+            if (biasedExp(b, DataType.H) == 0) {
+                return zero(DataType.H, context);
+            }
+            a = b;
+            aLow = bLow;
+            b = 0;
+        }
+        if (biasedExp(b, DataType.H) == 0) {
+            return roundH(a < 0, exponent(a, DataType.H), fraction(a, DataType.H) | aLow >>> 49,
+                          aLow << 15, context);
+        }
+
+        if (exponent(a, DataType.H) < exponent(b, DataType.H)) {
+            long tmp = a;
+            a = b;
+            b = tmp;
+            tmp = aLow;
+            aLow = bLow;
+            bLow = tmp;
+        }
+        int e = exponent(a, DataType.H);
+        int d = e - exponent(b, DataType.H);
+        long ah = fraction(a, DataType.H) | aLow >>> 49;
+        long al = aLow << 15;
+        long bh = fraction(b, DataType.H) | bLow >>> 49;
+        long bl = bLow << 15;
+        // halved fractions leave room for the carry
+        al = al >>> 1 | ah << 63;
+        ah >>>= 1;
+        bl = bl >>> 1 | bh << 63;
+        bh >>>= 1;
+        if (d >= 127) {
+            bl = 1;
+            bh = 0;
+        } else if (d >= 64) {
+            boolean sticky = bl != 0 || (bh & ((1L << (d - 64)) - 1)) != 0;
+            bl = bh >>> (d - 64) | (sticky ? 1 : 0);
+            bh = 0;
+        } else if (d > 0) {
+            boolean sticky = (bl & ((1L << d) - 1)) != 0;
+            bl = bl >>> d | bh << (64 - d) | (sticky ? 1 : 0);
+            bh >>>= d;
+        }
+
+        boolean neg = a < 0;
+        long sh;
+        long sl;
+        if ((a ^ b) >= 0) {
+            sl = al + bl;
+            sh = ah + bh + (Long.compareUnsigned(sl, al) < 0 ? 1 : 0);
+        } else {
+            if (compare128(ah, al, bh, bl) < 0) {
+                long tmp = ah;
+                ah = bh;
+                bh = tmp;
+                tmp = al;
+                al = bl;
+                bl = tmp;
+                neg = !neg;
+            }
+            sl = al - bl;
+            sh = ah - bh - (Long.compareUnsigned(al, bl) < 0 ? 1 : 0);
+        }
+        if (sh == 0 && sl == 0) {
+            return zero(DataType.H, context);
+        }
+        int n = sh != 0 ? Long.numberOfLeadingZeros(sh) : 64 + Long.numberOfLeadingZeros(sl);
+        if (n >= 64) {
+            sh = sl << (n - 64);
+            sl = 0;
+        } else if (n > 0) {
+            sh = sh << n | sl >>> (64 - n);
+            sl <<= n;
+        }
+        return roundH(neg, e + 1 - n, sh, sl, context);
+    }
+
+    private static FloatData mulH(FloatData arg1, FloatData arg2, Context context) {
+        long a = operand(arg1, DataType.H);
+        long b = operand(arg2, DataType.H);
+        if (biasedExp(a, DataType.H) == 0 || biasedExp(b, DataType.H) == 0) {
+            return zero(DataType.H, context);
+        }
+        long aLow = lowLogical(arg1);
+        long bLow = lowLogical(arg2);
+        long ah = fraction(a, DataType.H) | aLow >>> 49;
+        long al = aLow << 15;
+        long bh = fraction(b, DataType.H) | bLow >>> 49;
+        long bl = bLow << 15;
+
+        // 256-bit product w3:w2:w1:w0
+        long w0 = al * bl;
+        long w1 = unsignedMultiplyHigh(al, bl);
+        long w2 = ah * bh;
+        long w3 = unsignedMultiplyHigh(ah, bh);
+        long cross = ah * bl;
+        long crossHigh = unsignedMultiplyHigh(ah, bl);
+        int c2 = 0;
+        w1 += cross;
+        if (Long.compareUnsigned(w1, cross) < 0) {
+            ++c2;
+        }
+        cross = al * bh;
+        w1 += cross;
+        if (Long.compareUnsigned(w1, cross) < 0) {
+            ++c2;
+        }
+        w2 += crossHigh;
+        if (Long.compareUnsigned(w2, crossHigh) < 0) {
+            ++w3;
+        }
+        crossHigh = unsignedMultiplyHigh(al, bh);
+        w2 += crossHigh;
+        if (Long.compareUnsigned(w2, crossHigh) < 0) {
+            ++w3;
+        }
+        w2 += c2;
+        if (Long.compareUnsigned(w2, c2) < 0) {
+            ++w3;
+        }
+
+        int e = exponent(a, DataType.H) + exponent(b, DataType.H);
+        if (w3 >= 0) {
+            w3 = w3 << 1 | w2 >>> 63;
+            w2 = w2 << 1 | w1 >>> 63;
+            w1 <<= 1;
+            --e;
+        }
+        boolean sticky = (w1 | w0) != 0;
+        return roundH((a ^ b) < 0, e, w3, w2 | (sticky ? 1 : 0), context);
+    }
+
+    private static FloatData divH(FloatData dividend, FloatData divisor, Context context) {
+        long a = operand(dividend, DataType.H);
+        long b = operand(divisor, DataType.H);
+        if (biasedExp(a, DataType.H) == 0) {
+            return zero(DataType.H, context);
+        }
+        long aLow = lowLogical(dividend);
+        long bLow = lowLogical(divisor);
+        long rh = fraction(a, DataType.H) | aLow >>> 49;
+        long rl = aLow << 15;
+        long dh = fraction(b, DataType.H) | bLow >>> 49;
+        long dl = bLow << 15;
+        // halved fractions so that the shifted remainder fits in 128 bits
+        rl = rl >>> 1 | rh << 63;
+        rh >>>= 1;
+        dl = dl >>> 1 | dh << 63;
+        dh >>>= 1;
+
+        long qh = 0;
+        long ql = 0;
+        for (int i = 0; i < 128; i++) {
+            qh = qh << 1 | ql >>> 63;
+            ql <<= 1;
+            if (compare128(rh, rl, dh, dl) >= 0) {
+                rh = rh - dh - (Long.compareUnsigned(rl, dl) < 0 ? 1 : 0);
+                rl -= dl;
+                ql |= 1;
+            }
+            rh = rh << 1 | rl >>> 63;
+            rl <<= 1;
+        }
+        int e = exponent(a, DataType.H) - exponent(b, DataType.H) + 1;
+        if (qh >= 0) {
+            qh = qh << 1 | ql >>> 63;
+            ql <<= 1;
+            --e;
+        }
+        boolean sticky = (rh | rl) != 0;
+        return roundH((a ^ b) < 0, e, qh, ql | (sticky ? 1 : 0), context);
+    }
+
+    /**
+     * Rounds 0.mh:ml * 2 ** e to 113 bits and packs it as an H value.
+     */
+    private static FloatData roundH(boolean neg, int e, long mh, long ml, Context context) {
+        long half = 1L << 14;
+        ml += half;
+        if (Long.compareUnsigned(ml, half) < 0 && ++mh == 0) {
+            mh = SIGN;
+            ++e;
+        }
+        ml &= ~0x7fffL;
+
+        int biased = e + bias(DataType.H);
+        if (biased >= expLimit(DataType.H)) {
+            context.flagV.set();
+            context.flagC.clear();
+            return null;
+        }
+        if (biased <= 0) {
+            return zero(DataType.H, context);
+        }
+        long logical = (neg ? SIGN : 0) | (long)biased << 48 | (mh << 1) >>> 16;
+        context.flagN.set( neg );
+        context.flagZ.clear();
+        context.flagV.clear();
+        context.flagC.clear();
+        return toFloatData(logical, mh << 49 | ml >>> 15, DataType.H);
+    }
+
+    private static int compare128(long xh, long xl, long yh, long yl) {
+        int c = Long.compareUnsigned(xh, yh);
+        return c != 0 ? c : Long.compareUnsigned(xl, yl);
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    // low 64 bits of hi:lo >>> n, 0 < n < 128
+    private static long shiftRight128(long hi, long lo, int n) {
+        if (n < 64) {
+            return lo >>> n | hi << (64 - n);
+        } else {
+            return hi >>> (n - 64);
+        }
+    }
+}
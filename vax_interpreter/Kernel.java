@@ -29,14 +29,14 @@ class Kernel {
 
         if (sysent == Sysent.indir) {
             /* indirect */
-            syscallNum = context.memory.loadInt(params, DataType.L).uint() & 0x3f;
+            syscallNum = context.memory.loadLongword(params) & 0x3f;
             params += NBPW;
             sysent = Sysent.getSysent(syscallNum);
         }
 
-        ArrayList<Integer> args = new ArrayList<>(sysent.narg);
+        int[] args = new int[sysent.narg];
         for (int i = 0; i < sysent.narg; i++) {
-            args.add(context.memory.loadInt(params, DataType.L).sint());
+            args[i] = context.memory.loadLongword(params);
             params += NBPW;
         }
 
@@ -45,6 +45,7 @@ class Kernel {
         context.u.u_r.r_val2 = context.register[1];
  //   System.err.printf("--: %s%n", sysent);
         sysent.call(args, context);
+        context.memory.wake();
 
         if (context.u.u_error == 0) {
             context.register[0] = context.u.u_r.r_val1;
@@ -55,11 +56,26 @@ class Kernel {
         }
     }
 
+    /**
+     * Waits on Context.class until another process notifies, as blocked
+     * system calls do. A process blocked for the -z threshold has its
+     * memory compressed while it waits.
+     */
+    static void sleep() throws InterruptedException {
+        Context context = Process.current();
+        Context.class.wait(MemoryCompressor.delay(context));
+        // the caller goes on to read or write guest memory
+        context.memory.stopCompression();
+    }
+
     static class Constant {
         public static final int NBPW = 4;       /* number of bytes in an integer */
         public static final int NOFILE = 20;    /* max open files per contextess */
         public static final int NSIG = 17;
         public static final int NCARGS = 5120;  /* # characters in exec arglist */
+        public static final int USRSTACK = 0x80000000;  /* top of the user stack */
+        public static final int MAXSSIZ = 0x1000000;    /* max stack size */
+        public static final int MAXDSIZ = 0x4000000;    /* max end of data segment */
 
         // Error
         public static final int EPERM = 1;
@@ -68,6 +84,7 @@ class Kernel {
         public static final int ENOEXEC = 8;
         public static final int EBADF = 9;
         public static final int ECHILD = 10;
+        public static final int ENOMEM = 12;
         public static final int EACCES = 13;
         public static final int EFAULT = 14;
         public static final int EBUSY = 16;
@@ -144,17 +161,37 @@ class Kernel {
         private void freePid() {
             pidFreeSet.add((int)p_pid);
         }
+
+        /**
+         * Takes over pid, as recorded in a checkpoint, when it is free.
+         */
+        void restorePid(short pid) {
+            if (pidFreeSet.remove((int)pid)) {
+                freePid();
+                p_pid = pid;
+            }
+        }
+
+        boolean hasChildren() {
+            for (Proc p : procSet) {
+                if (p.p_ppid == p_pid) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
     enum Sysent {
         indir (0, 0),
         exit (1, 1) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 context.u.exit();
+                context.memory.release();
 
                 Proc p = context.u.u_procp;
                 p.p_stat = SZOMB;
-                p.xp_xstat = (short)((args.get(0) & 0xff) << 8);
+                p.xp_xstat = (short)((args[0] & 0xff) << 8);
 
                 /*for (Proc q : procSet) {
                     if (q.p_ppid == p.p_pid) {
@@ -170,7 +207,7 @@ class Kernel {
             }
         },
         fork (2, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 Process newProc = new Process(context);
                 newProc.context.register[0] = context.u.u_procp.p_pid;
                 newProc.context.register[1] = 1;
@@ -181,10 +218,10 @@ class Kernel {
             }
         },
         read (3, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
-                int addr = args.get(1);
-                int count = args.get(2);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
+                int addr = args[1];
+                int count = args[2];
                 int readCount = context.u.fileRead(fd, addr, count);
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = readCount;
@@ -192,10 +229,10 @@ class Kernel {
             }
         },
         write (4, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
-                int addr = args.get(1);
-                int count = args.get(2);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
+                int addr = args[1];
+                int count = args[2];
                 int wroteCount = context.u.fileWrite(fd, addr, count);
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = wroteCount;
@@ -203,9 +240,9 @@ class Kernel {
             }
         },
         open (5, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                String fname = getFileName(args.get(0), context);
-                int mode = args.get(1) + 1;
+            @Override public void call(int[] args, Context context) {
+                String fname = getFileName(args[0], context);
+                int mode = args[1] + 1;
                 int fd = context.u.fileOpen(fname, mode);
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = fd;
@@ -213,13 +250,13 @@ class Kernel {
             }
         },
         close (6, 1) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
                 context.u.fileClose(fd);
             }
         },
         wait (7, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 Proc p = context.u.u_procp;
                 boolean isFound = false;
                 do {
@@ -239,7 +276,7 @@ class Kernel {
                     }
                     if (isFound) {
                         try {
-                            Context.class.wait();
+                            sleep();
                         } catch (InterruptedException e) {}
                     }
                 } while (isFound);
@@ -248,14 +285,14 @@ class Kernel {
             }
         },
         creat (8, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                String fname = getFileName(args.get(0), context, FileNameOption.NOCHANGE_BLANK);
+            @Override public void call(int[] args, Context context) {
+                String fname = getFileName(args[0], context, FileNameOption.NOCHANGE_BLANK);
                 if (fname.isEmpty()) {
                     context.u.u_error = ENOENT;
                     return;
                 }
 
-                int fmode = args.get(1);
+                int fmode = args[1];
                 int fd = context.u.fileCreate(fname, fmode);
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = fd;
@@ -263,10 +300,10 @@ class Kernel {
             }
         },
         link (9, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                Path target = Paths.get(getFileName(args.get(0), context));
+            @Override public void call(int[] args, Context context) {
+                Path target = Paths.get(getFileName(args[0], context));
 
-                String linkname = getFileName(args.get(1), context, FileNameOption.NOCHANGE_BLANK);
+                String linkname = getFileName(args[1], context, FileNameOption.NOCHANGE_BLANK);
                 if (linkname.isEmpty()) {
                     context.u.u_error = ENOENT;
                     return;
@@ -290,8 +327,8 @@ class Kernel {
             }
         },
         unlink (10, 1) {
-            @Override public void call(List<Integer> args, Context context) {
-                String fname = getFileName(args.get(0), context, FileNameOption.NOCHANGE_BLANK);
+            @Override public void call(int[] args, Context context) {
+                String fname = getFileName(args[0], context, FileNameOption.NOCHANGE_BLANK);
                 File file = new File(fname);
                 if (!file.exists() || fname.isEmpty()) {
                     context.u.u_error = ENOENT;
@@ -304,8 +341,8 @@ class Kernel {
         },
         exec (11, 2),
         chdir (12, 1) {
-            @Override public void call(List<Integer> args, Context context) {
-                Path dir = Paths.get(getFileName(args.get(0), context));
+            @Override public void call(int[] args, Context context) {
+                Path dir = Paths.get(getFileName(args[0], context));
                 if (!Files.exists(dir, NOFOLLOW_LINKS)) {
                     context.u.u_error = ENOENT;
                     return;
@@ -324,8 +361,8 @@ class Kernel {
         },
         time (13, 0),
         mknod (14, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                String fname = getFileName(args.get(0), context, FileNameOption.NOCHANGE_BLANK);
+            @Override public void call(int[] args, Context context) {
+                String fname = getFileName(args[0], context, FileNameOption.NOCHANGE_BLANK);
                 if (fname.isEmpty()) {
                     context.u.u_error = ENOENT;
                     return;
@@ -336,7 +373,7 @@ class Kernel {
                     return;
                 }
 
-                int fmode = args.get(1);
+                int fmode = args[1];
                 if ((fmode & IFMT) == 0) {
                     try {
                         Files.createFile(fpath);
@@ -359,43 +396,49 @@ class Kernel {
             }
         },
         chmod (15, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                Path fpath = Paths.get(getFileName(args.get(0), context));
+            @Override public void call(int[] args, Context context) {
+                Path fpath = Paths.get(getFileName(args[0], context));
                 if (!Files.exists(fpath)) {
                     context.u.u_error = ENOENT;
                     return;
                 }
 
-                int fmode = args.get(1);
+                int fmode = args[1];
                 if (!FileOperations.setFileMode(fpath, fmode)) {
                     context.u.u_error = EPERM;
                 }
             }
         },
         chown (16, 3) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 if (context.u.u_uid != 0) {
                     context.u.u_error = EPERM;
                     return;
                 }
 
-                Path filePath = Paths.get(getFileName(args.get(0), context));
+                Path filePath = Paths.get(getFileName(args[0], context));
                 if (!Files.exists(filePath)) {
                     context.u.u_error = ENOENT;
                     return;
                 }
 
-                int uid = args.get(1);
-                int gid = args.get(2);
+                int uid = args[1];
+                int gid = args[2];
                 if (!FileOperations.changeFileOwner(filePath, uid, gid)) {
                     context.u.u_error = EPERM;
                 }
             }
         },
-        sbreak (17, 1),
+        sbreak (17, 1) {
+            @Override public void call(int[] args, Context context) {
+                if (!context.memory.setBreak(args[0])) {
+                    context.u.u_error = ENOMEM;
+                }
+            }
+        },
         stat (18, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                Path fpath = Paths.get(getFileName(args.get(0), context));
+            @Override public void call(int[] args, Context context) {
+                Path fpath = Paths.get(getFileName(args[0], context));
                 if (!Files.exists(fpath, NOFOLLOW_LINKS)) {
                     context.u.u_error = ENOENT;
                     return;
@@ -407,15 +450,15 @@ class Kernel {
                     return;
                 }
 
-                int addr = args.get(1);
+                int addr = args[1];
                 context.memory.storeBytes(addr, fstatus, fstatus.length);
             }
         },
         seek (19, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
-                int offset = args.get(1);
-                int sbase = args.get(2);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
+                int offset = args[1];
+                int sbase = args[2];
                 int newOff = context.u.fileSeek(fd, offset, sbase);
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = newOff;
@@ -423,7 +466,7 @@ class Kernel {
             }
         },
         getpid (20, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 context.u.u_r.r_val1 = context.u.u_procp.p_pid;
                 context.u.u_r.r_val2 = context.u.u_procp.p_ppid;
             }
@@ -432,7 +475,7 @@ class Kernel {
         umount (22, 1),
         setuid (23, 1),
         getuid (24, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 context.u.u_r.r_val1 = context.u.u_ruid;
                 context.u.u_r.r_val2 = context.u.u_uid;
             }
@@ -441,8 +484,8 @@ class Kernel {
         ptrace (26, 4),
         alarm (27, 1),
         fstat (28, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
                 Path fpath = context.u.getFilePath(fd);
                 if (fpath == null) {
                     context.u.u_error = EBADF;
@@ -455,7 +498,7 @@ class Kernel {
                     return;
                 }
 
-                int addr = args.get(1);
+                int addr = args[1];
                 context.memory.storeBytes(addr, fstatus, fstatus.length);
             }
         },
@@ -464,14 +507,14 @@ class Kernel {
         stty (31, 2),
         gtty (32, 2),
         access (33, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                File file = new File(getFileName(args.get(0), context));
+            @Override public void call(int[] args, Context context) {
+                File file = new File(getFileName(args[0], context));
                 if (!file.exists()) {
                     context.u.u_error = ENOENT;
                     return;
                 }
 
-                int fmode = args.get(1);
+                int fmode = args[1];
                 if ((fmode & IREAD >> 6) != 0) {
                     if (!file.canRead()) {
                         context.u.u_error = EACCES;
@@ -494,8 +537,8 @@ class Kernel {
         sync (36, 0),
         kill (37, 2),
         dup (41, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd1 = args.get(0);
+            @Override public void call(int[] args, Context context) {
+                int fd1 = args[0];
                 int fd2;
                 int m = fd1 & ~0x3f;
                 fd1 &= 0x3f;
@@ -503,7 +546,7 @@ class Kernel {
                 if ((m & 0x40) == 0) {
                     fd2 = context.u.fileDup(fd1);
                 } else {
-                    fd2 = args.get(1);
+                    fd2 = args[1];
                     context.u.fileDup(fd1, fd2);
                 }
                 if (context.u.u_error == 0) {
@@ -512,7 +555,7 @@ class Kernel {
             }
         },
         pipe (42, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 int[] fds = context.u.pipe();
                 if (context.u.u_error == 0) {
                     context.u.u_r.r_val1 = fds[0];
@@ -524,28 +567,28 @@ class Kernel {
         prof (44, 4),
         setgid (46, 1),
         getgid (47, 0) {
-            @Override public void call(List<Integer> args, Context context) {
+            @Override public void call(int[] args, Context context) {
                 context.u.u_r.r_val1 = context.u.u_rgid;
                 context.u.u_r.r_val2 = context.u.u_gid;
             }
         },
         sig (48, 2) {
-            @Override public void call(List<Integer> args, Context context) {
-                int signo = args.get(0);
+            @Override public void call(int[] args, Context context) {
+                int signo = args[0];
                 if (signo <= 0 || signo >= NSIG || signo == 9) { // 9: SIGKIL
                     context.u.u_error = EINVAL;
                     return;
                 }
                 context.u.u_r.r_val1 = context.u.u_signal[signo];
-                context.u.u_signal[signo] = args.get(1);
+                context.u.u_signal[signo] = args[1];
             }
         },
         sysacct (51, 1),
         sysphys (52, 3),
         syslock (53, 1),
         ioctl (54, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                int fd = args.get(0);
+            @Override public void call(int[] args, Context context) {
+                int fd = args[0];
                 boolean isFile = context.u.isNormalFile(fd);
                 if (context.u.u_error == 0) {
                     if (isFile) {
@@ -556,8 +599,8 @@ class Kernel {
         },
         mpxchan (56, 4),
         exece (59, 3) {
-            @Override public void call(List<Integer> args, Context context) {
-                String fname = getFileName(args.get(0), context);
+            @Override public void call(int[] args, Context context) {
+                String fname = getFileName(args[0], context);
                 File file = new File(fname);
                 if (!file.exists()) {
                     context.u.u_error = ENOENT;
@@ -572,10 +615,10 @@ class Kernel {
                 List<byte[]> envBuf = new ArrayList<>();
                 int nChars = 0;
 
-                int argp = args.get(1);
+                int argp = args[1];
                 if (argp != 0) {
                     do {
-                        int ap = context.memory.loadInt(argp, DataType.L).uint();
+                        int ap = context.memory.loadLongword(argp);
                         argp += NBPW;
                         if (ap == 0) {
                             break;
@@ -590,9 +633,9 @@ class Kernel {
                         nChars += arg.length;
                     } while (true);
 
-                    int envp = args.get(2);
+                    int envp = args[2];
                     do {
-                        int ap = context.memory.loadInt(envp, DataType.L).uint();
+                        int ap = context.memory.loadLongword(envp);
                         envp += NBPW;
                         if (ap == 0) {
                             break;
@@ -621,27 +664,27 @@ class Kernel {
 
 
                 nChars = nChars + (NBPW - 1) & ~(NBPW - 1);
-                int ucp = MEM_SIZE - nChars - NBPW;
+                int ucp = USRSTACK - nChars - NBPW;
                 int ap = ucp - (argBuf.size() + envBuf.size() + 3) * NBPW;
                 context.register[SP] = ap;
-                context.memory.store(ap, new IntData(argBuf.size()));
+                context.memory.storeLongword(ap, argBuf.size());
                 ap += NBPW;
                 for (byte[] arg: argBuf) {
-                    context.memory.store(ap, new IntData(ucp));
+                    context.memory.storeLongword(ap, ucp);
                     ap += NBPW;
                     context.memory.storeBytes(ucp, arg, arg.length);
                     ucp += arg.length;
                 }
-                context.memory.store(ap, new IntData(0));
+                context.memory.storeLongword(ap, 0);
                 ap += NBPW;
                 for (byte[] env: envBuf) {
-                    context.memory.store(ap, new IntData(ucp));
+                    context.memory.storeLongword(ap, ucp);
                     ap += NBPW;
                     context.memory.storeBytes(ucp, env, env.length);
                     ucp += env.length;
                 }
-                context.memory.store(ap, new IntData(0));
-                context.memory.store(ucp, new IntData(0));
+                context.memory.storeLongword(ap, 0);
+                context.memory.storeLongword(ucp, 0);
 
                 // setregs
                 for (int i = 0; i < NSIG; i++) {
@@ -680,7 +723,7 @@ class Kernel {
             }
         }
 
-        public void call(List<Integer> args, Context context) {}
+        public void call(int[] args, Context context) {}
 
         private enum FileNameOption {
             NOCHANGE_BLANK;
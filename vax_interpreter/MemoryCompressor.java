@@ -0,0 +1,140 @@
+package vax_interpreter;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import static vax_interpreter.Util.*;
+
+/**
+ * Compression of the memory of blocked processes, enabled with -z and a
+ * threshold in milliseconds. A process that stays blocked in a system
+ * call for the threshold is queued here, and a daemon thread deflates its
+ * private pages at level 1 until the process wakes up. Each page is
+ * inflated again by Memory on its first access.
+ *
+ * The totals are reported on stderr after each process is compressed.
+ */
+class MemoryCompressor implements Runnable {
+    private static long thresholdMillis;
+    private static final BlockingQueue<Context> queue = new LinkedBlockingQueue<>();
+    // inflation happens on guest threads, which hold Context.class
+    private static final Inflater inflater = new Inflater();
+
+    // totals, updated by the compressor and by guest threads; guarded by
+    // MemoryCompressor.class
+    private static long packedPages;
+    private static long packedBytes;
+    private static long packNanos;
+    private static long unpackedPages;
+    private static long unpackNanos;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] buf = new byte[PAGE_SIZE];
+    // length of the last page deflated
+    private int deflatedLength;
+
+    public static void enable(long threshold) {
+        thresholdMillis = threshold;
+        Thread thread = new Thread(new MemoryCompressor(), "MemoryCompressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Returns how long a blocked process should wait before it is checked
+     * again, queueing its memory once it has been blocked for the
+     * threshold; 0 means until notified.
+     */
+    public static long delay(Context context) {
+        if (thresholdMillis == 0) {
+            return 0;
+        }
+        long blocked = context.memory.blockedMillis();
+        if (blocked < thresholdMillis) {
+            return thresholdMillis - blocked;
+        }
+        if (context.memory.startCompression()) {
+            queue.add(context);
+        }
+        return 0;
+    }
+
+    /**
+     * Fills page with the bytes packed by deflate.
+     */
+    public static void inflate(byte[] packed, Page page) {
+        long start = System.nanoTime();
+        byte[] bytes = new byte[PAGE_SIZE];
+        inflater.reset();
+        inflater.setInput(packed);
+        try {
+            inflater.inflate(bytes);
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        page.put(0, bytes, 0, PAGE_SIZE);
+        countUnpacked(System.nanoTime() - start);
+    }
+
+    @Override public void run() {
+        try {
+            while (true) {
+                Context context = queue.take();
+                long pages = packedPages();
+                context.memory.forEachPage((addr, page) -> {
+                    if (context.memory.pack(addr, page, this::deflate)) {
+                        countPacked(deflatedLength);
+                    }
+                });
+                if (packedPages() != pages) {
+                    report(context.u.u_procp.p_pid);
+                }
+            }
+        } catch (InterruptedException e) {
+            // the interpreter is shutting down
+        }
+    }
+
+    // the deflated bytes, or null when they would not save anything
+    private byte[] deflate(byte[] bytes) {
+        long start = System.nanoTime();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        int len = deflater.deflate(buf);
+        byte[] packed = deflater.finished() && len < PAGE_SIZE ? Arrays.copyOf(buf, len) : null;
+        deflatedLength = len;
+        countDeflated(System.nanoTime() - start);
+        return packed;
+    }
+
+    private static synchronized long packedPages() {
+        return packedPages;
+    }
+
+    private static synchronized void countPacked(int len) {
+        ++packedPages;
+        packedBytes += len;
+    }
+
+    private static synchronized void countDeflated(long nanos) {
+        packNanos += nanos;
+    }
+
+    private static synchronized void countUnpacked(long nanos) {
+        ++unpackedPages;
+        unpackNanos += nanos;
+    }
+
+    private static synchronized void report(int pid) {
+        System.err.printf("Memory compression: pid %d blocked; %d pages packed to %d KB (%.1f:1) in %.1f ms, "
+                          + "%d pages unpacked in %.1f ms\n",
+                          pid, packedPages, packedBytes / 1024,
+                          (double)packedPages * PAGE_SIZE / Math.max(packedBytes, 1), packNanos / 1e6,
+                          unpackedPages, unpackNanos / 1e6);
+    }
+}
@@ -5,15 +5,33 @@ import static vax_interpreter.Util.*;
 import static vax_interpreter.DataType.*;
 
 import static vax_interpreter.NopExec.*;
+import static vax_interpreter.BptExec.*;
 import static vax_interpreter.MovExec.*;
 import static vax_interpreter.MovzExec.*;
 import static vax_interpreter.PushExec.*;
 import static vax_interpreter.MovaExec.*;
 import static vax_interpreter.PushaExec.*;
+import static vax_interpreter.PushrExec.*;
+import static vax_interpreter.PoprExec.*;
 import static vax_interpreter.McomExec.*;
 import static vax_interpreter.MnegExec.*;
 import static vax_interpreter.FmnegExec.*;
+import static vax_interpreter.AdwcExec.*;
+import static vax_interpreter.SbwcExec.*;
+import static vax_interpreter.EmulExec.*;
+import static vax_interpreter.EdivExec.*;
+import static vax_interpreter.JsbExec.*;
+import static vax_interpreter.RsbExec.*;
+import static vax_interpreter.FaddExec.*;
+import static vax_interpreter.FsubExec.*;
+import static vax_interpreter.FmulExec.*;
+import static vax_interpreter.FdivExec.*;
+import static vax_interpreter.EmodExec.*;
+import static vax_interpreter.PolyExec.*;
+import static vax_interpreter.FcmpExec.*;
+import static vax_interpreter.CvtfExec.*;
 import static vax_interpreter.AddExec.*;
+import static vax_interpreter.AdawiExec.*;
 import static vax_interpreter.SubExec.*;
 import static vax_interpreter.MulExec.*;
 import static vax_interpreter.DivExec.*;
@@ -29,6 +47,9 @@ import static vax_interpreter.TstExec.*;
 import static vax_interpreter.CmpExec.*;
 import static vax_interpreter.ExtExec.*;
 import static vax_interpreter.InsvExec.*;
+import static vax_interpreter.FfExec.*;
+import static vax_interpreter.CmpvExec.*;
+import static vax_interpreter.RotlExec.*;
 import static vax_interpreter.JmpExec.*;
 import static vax_interpreter.BrExec.*;
 import static vax_interpreter.BbExec.*;
@@ -36,16 +57,31 @@ import static vax_interpreter.BlbExec.*;
 import static vax_interpreter.CallExec.*;
 import static vax_interpreter.RetExec.*;
 import static vax_interpreter.ChmkExec.*;
+import static vax_interpreter.IndexExec.*;
 import static vax_interpreter.CaseExec.*;
 import static vax_interpreter.AobExec.*;
 import static vax_interpreter.SobExec.*;
 import static vax_interpreter.CvtExec.*;
 import static vax_interpreter.CvtlpExec.*;
+import static vax_interpreter.CvtplExec.*;
+import static vax_interpreter.CvtpsExec.*;
+import static vax_interpreter.CvtspExec.*;
+import static vax_interpreter.CvtptExec.*;
+import static vax_interpreter.CvttpExec.*;
+import static vax_interpreter.AshpExec.*;
 import static vax_interpreter.AcbExec.*;
 import static vax_interpreter.MovcExec.*;
 import static vax_interpreter.CmpcExec.*;
 import static vax_interpreter.LoccExec.*;
+import static vax_interpreter.ScancExec.*;
+import static vax_interpreter.MatchcExec.*;
+import static vax_interpreter.MovtcExec.*;
+import static vax_interpreter.MovtucExec.*;
+import static vax_interpreter.CrcExec.*;
+import static vax_interpreter.QueueExec.*;
 import static vax_interpreter.MovpExec.*;
+import static vax_interpreter.ArithpExec.*;
+import static vax_interpreter.CmppExec.*;
 import static vax_interpreter.EditpcExec.*;
 
 
@@ -124,6 +160,7 @@ class Opcode {
 
 enum VaxInstruction {
     NOP (0x1, NopExec),
+    BPT (0x3, BptExec),
 
     MOVB (0x90, MovExec, B,B),   MOVW (0xb0, MovExec, W,W),
     MOVL (0xd0, MovExec, L,L),   MOVQ (0x7d, MovExec, Q,Q),
@@ -144,6 +181,8 @@ enum VaxInstruction {
     PUSHAL (0xdf, PushaExec, L),
     PUSHAQ (0x7f, PushaExec, Q), PUSHAO (0x7ffd, PushaExec, O),
 
+    PUSHR (0xbb, PushrExec, W), POPR (0xba, PoprExec, W),
+
     MCOMB (0x92, McomExec, B,B), MCOMW (0xb2, McomExec, W,W),
     MCOML (0xd2, McomExec, L,L),
 
@@ -156,33 +195,50 @@ enum VaxInstruction {
     ADDB2 (0x80, AddExec, B,B), ADDB3 (0x81, AddExec, B,B,B),
     ADDW2 (0xa0, AddExec, W,W), ADDW3 (0xa1, AddExec, W,W,W),
     ADDL2 (0xc0, AddExec, L,L), ADDL3 (0xc1, AddExec, L,L,L),
+    ADAWI (0x58, AdawiExec, W,W),
 
-    /*
     ADDF2 (0x40, FaddExec, F,F),   ADDF3 (0x41, FaddExec, F,F,F),
     ADDD2 (0x60, FaddExec, D,D),   ADDD3 (0x61, FaddExec, D,D,D),
     ADDG2 (0x40fd, FaddExec, G,G), ADDG3 (0x41fd, FaddExec, G,G,G),
     ADDH2 (0x60fd, FaddExec, H,H), ADDH3 (0x61fd, FaddExec, H,H,H),
-    */
 
     SUBB2 (0x82, SubExec, B,B), SUBB3 (0x83, SubExec, B,B,B),
     SUBW2 (0xa2, SubExec, W,W), SUBW3 (0xa3, SubExec, W,W,W),
     SUBL2 (0xc2, SubExec, L,L), SUBL3 (0xc3, SubExec, L,L,L),
 
-    /*
-    SUBF2 (0x42, F,F),   SUBF3 (0x43, F,F,F),
-    SUBD2 (0x62, D,D),   SUBD3 (0x63, D,D,D),
-    SUBG2 (0x42fd, G,G), SUBG3 (0x43fd, G,G,G),
-    SUBH2 (0x62fd, H,H), SUBH3 (0x63fd, H,H,H),
-    */
+    ADWC (0xd8, AdwcExec, L,L), SBWC (0xd9, SbwcExec, L,L),
+
+    SUBF2 (0x42, FsubExec, F,F),   SUBF3 (0x43, FsubExec, F,F,F),
+    SUBD2 (0x62, FsubExec, D,D),   SUBD3 (0x63, FsubExec, D,D,D),
+    SUBG2 (0x42fd, FsubExec, G,G), SUBG3 (0x43fd, FsubExec, G,G,G),
+    SUBH2 (0x62fd, FsubExec, H,H), SUBH3 (0x63fd, FsubExec, H,H,H),
 
     MULB2 (0x84, MulExec, B,B), MULB3 (0x85, MulExec, B,B,B),
     MULW2 (0xa4, MulExec, W,W), MULW3 (0xa5, MulExec, W,W,W),
     MULL2 (0xc4, MulExec, L,L), MULL3 (0xc5, MulExec, L,L,L),
 
+    MULF2 (0x44, FmulExec, F,F),   MULF3 (0x45, FmulExec, F,F,F),
+    MULD2 (0x64, FmulExec, D,D),   MULD3 (0x65, FmulExec, D,D,D),
+    MULG2 (0x44fd, FmulExec, G,G), MULG3 (0x45fd, FmulExec, G,G,G),
+    MULH2 (0x64fd, FmulExec, H,H), MULH3 (0x65fd, FmulExec, H,H,H),
+
     DIVB2 (0x86, DivExec, B,B), DIVB3 (0x87, DivExec, B,B,B),
     DIVW2 (0xa6, DivExec, W,W), DIVW3 (0xa7, DivExec, W,W,W),
     DIVL2 (0xc6, DivExec, L,L), DIVL3 (0xc7, DivExec, L,L,L),
 
+    EMUL (0x7a, EmulExec, L,L,L,Q), EDIV (0x7b, EdivExec, L,Q,L,L),
+
+    DIVF2 (0x46, FdivExec, F,F),   DIVF3 (0x47, FdivExec, F,F,F),
+    DIVD2 (0x66, FdivExec, D,D),   DIVD3 (0x67, FdivExec, D,D,D),
+    DIVG2 (0x46fd, FdivExec, G,G), DIVG3 (0x47fd, FdivExec, G,G,G),
+    DIVH2 (0x66fd, FdivExec, H,H), DIVH3 (0x67fd, FdivExec, H,H,H),
+
+    EMODF (0x54, EmodExec, F,B,F,L,F),   EMODD (0x74, EmodExec, D,B,D,L,D),
+    EMODG (0x54fd, EmodExec, G,W,G,L,G),
+
+    POLYF (0x55, PolyExec, F,W,B),   POLYD (0x75, PolyExec, D,W,B),
+    POLYG (0x55fd, PolyExec, G,W,B),
+
     BITB (0x93, BitExec, B,B), BITW (0xb3, BitExec, W,W),
     BITL (0xd3, BitExec, L,L),
 
@@ -218,17 +274,23 @@ enum VaxInstruction {
     CMPB (0x91, CmpExec, B,B), CMPW (0xb1, CmpExec, W,W),
     CMPL (0xd1, CmpExec, L,L),
 
-    /*
-    CMPF (0x51, F,F),   CMPD (0x71, D,D),
-    CMPG (0x51fd, G,G), CMPH (0x71fd, H,H),
-    */
+    CMPF (0x51, FcmpExec, F,F),   CMPD (0x71, FcmpExec, D,D),
+    CMPG (0x51fd, FcmpExec, G,G), CMPH (0x71fd, FcmpExec, H,H),
 
     EXTV (0xee, ExtvExec, L,B,B,L),
     EXTZV (0xef, ExtzvExec, L,B,B,L),
 
     INSV (0xf0, InsvExec, L,L,B,B),
 
+    FFS (0xea, FfsExec, L,B,B,L), FFC (0xeb, FfcExec, L,B,B,L),
+    CMPV (0xec, CmpvExec, L,B,B,L), CMPZV (0xed, CmpzvExec, L,B,B,L),
+
+    ROTL (0x9c, RotlExec, B,L,L),
+
     JMP (0x17, JmpExec, B),
+    JSB (0x16, JsbExec, B),
+    BSBB (0x10, JsbExec, BrB),    BSBW (0x30, JsbExec, BrW),
+    RSB (0x5, RsbExec),
     BRB (0x11, BrExec, BrB),      BRW (0x31, BrExec, BrW),
     BNEQ (0x12, BneqExec, BrB),   BEQL (0x13, BeqlExec, BrB),
     BGTR (0x14, BgtrExec, BrB),   BLEQ (0x15, BleqExec, BrB),
@@ -240,7 +302,7 @@ enum VaxInstruction {
     BBS (0xe0, BbsExec, L,B,BrB),    BBC (0xe1, BbcExec, L,B,BrB),
     BBSS (0xe2, BbssExec, L,B,BrB),  BBCS (0xe3, BbcsExec, L,B,BrB),
     BBSC (0xe4, BbscExec, L,B,BrB),  BBCC  (0xe5, BbccExec, L,B,BrB),
-    BBSSI (0xe6, BbssExec, L,B,BrB), BBCCI (0xe7, BbccExec, L,B,BrB),
+    BBSSI (0xe6, BbssiExec, L,B,BrB), BBCCI (0xe7, BbcciExec, L,B,BrB),
 
     BLBS (0xe8, BlbsExec, L,BrB), BLBC (0xe9, BlbcExec, L,BrB),
 
@@ -253,6 +315,8 @@ enum VaxInstruction {
     CASEB (0x8f, CaseExec, B,B,B), CASEW (0xaf, CaseExec, W,W,W),
     CASEL (0xcf, CaseExec, L,L,L),
 
+    INDEX (0xa, IndexExec, L,L,L,L,L,L),
+
     AOBLSS(0xf2, AoblssExec, L,L,BrB),
     AOBLEQ(0xf3, AobleqExec, L,L,BrB),
 
@@ -263,29 +327,31 @@ enum VaxInstruction {
     CVTWB (0x33, CvtExec, W,B), CVTWL (0x32, CvtExec, W,L),
     CVTLB (0xf6, CvtExec, L,B), CVTLW (0xf7, CvtExec, L,W),
 
-    /*
-    CVTBF (0x4c, B,F),   CVTBD (0x6c, B,D),
-    CVTBG (0x4cfd, B,G), CVTBH (0x6cfd, B,H),
-    CVTWF (0x4d, W,F),   CVTWD (0x6d, W,D),
-    CVTWG (0x4dfd, W,G), CVTWH (0x6dfd, W,H),
-    CVTLF (0x4e, L,F),   CVTLD (0x6e, L,D),
-    CVTLG (0x4efd, L,G), CVTLH (0x6efd, L,H),
-    CVTFB (0x48, F,B),   CVTDB (0x68, D,B),
-    CVTGB (0x48fd, G,B), CVTHB (0x68fd, H,B),
-    CVTFW (0x49, F,W),   CVTDW (0x69, D,W),
-    CVTGW (0x49fd, G,W), CVTHW (0x69fd, H,W),
-    CVTFL (0x4a, F,L),   CVTRFL(0x4b, F,L),
-    CVTDL (0x6a, D,L),   CVTRDL(0x6b, D,L),
-    CVTGL (0x4afd, G,L), CVTRGL(0x4bfd, G,L),
-    CVTHL (0x6afd, H,L), CVTRHL(0x6bfd, H,L),
-    CVTFD (0x56, F,D),   CVTFG (0x99fd, F,G),
-    CVTFH (0x98fd, F,H), CVTDF (0x76, D,F),
-    CVTDH (0x32fd, D,H), CVTGF (0x33fd, G,F),
-    CVTGH (0x56fd, G,H), CVTHF (0xf6fd, H,F),
-    CVTHD (0xf7fd, H,D), CVTHG (0x76fd, H,G),
-    */
-
-    CVTLP (0xf9, CvtlpExec, L,W,B),
+    CVTBF (0x4c, CvtifExec, B,F),   CVTBD (0x6c, CvtifExec, B,D),
+    CVTBG (0x4cfd, CvtifExec, B,G), CVTBH (0x6cfd, CvtifExec, B,H),
+    CVTWF (0x4d, CvtifExec, W,F),   CVTWD (0x6d, CvtifExec, W,D),
+    CVTWG (0x4dfd, CvtifExec, W,G), CVTWH (0x6dfd, CvtifExec, W,H),
+    CVTLF (0x4e, CvtifExec, L,F),   CVTLD (0x6e, CvtifExec, L,D),
+    CVTLG (0x4efd, CvtifExec, L,G), CVTLH (0x6efd, CvtifExec, L,H),
+    CVTFB (0x48, CvtfiExec, F,B),   CVTDB (0x68, CvtfiExec, D,B),
+    CVTGB (0x48fd, CvtfiExec, G,B), CVTHB (0x68fd, CvtfiExec, H,B),
+    CVTFW (0x49, CvtfiExec, F,W),   CVTDW (0x69, CvtfiExec, D,W),
+    CVTGW (0x49fd, CvtfiExec, G,W), CVTHW (0x69fd, CvtfiExec, H,W),
+    CVTFL (0x4a, CvtfiExec, F,L),   CVTRFL(0x4b, CvtrfiExec, F,L),
+    CVTDL (0x6a, CvtfiExec, D,L),   CVTRDL(0x6b, CvtrfiExec, D,L),
+    CVTGL (0x4afd, CvtfiExec, G,L), CVTRGL(0x4bfd, CvtrfiExec, G,L),
+    CVTHL (0x6afd, CvtfiExec, H,L), CVTRHL(0x6bfd, CvtrfiExec, H,L),
+    CVTFD (0x56, CvtffExec, F,D),   CVTFG (0x99fd, CvtffExec, F,G),
+    CVTFH (0x98fd, CvtffExec, F,H), CVTDF (0x76, CvtffExec, D,F),
+    CVTDH (0x32fd, CvtffExec, D,H), CVTGF (0x33fd, CvtffExec, G,F),
+    CVTGH (0x56fd, CvtffExec, G,H), CVTHF (0xf6fd, CvtffExec, H,F),
+    CVTHD (0xf7fd, CvtffExec, H,D), CVTHG (0x76fd, CvtffExec, H,G),
+
+    CVTLP (0xf9, CvtlpExec, L,W,B), CVTPL (0x36, CvtplExec, W,B,L),
+    CVTPS (0x8, CvtpsExec, W,B,W,B), CVTSP (0x9, CvtspExec, W,B,W,B),
+    CVTPT (0x24, CvtptExec, W,B,B,W,B), CVTTP (0x26, CvttpExec, W,B,B,W,B),
+
+    ASHP (0xf8, AshpExec, B,W,B,B,W,B),
 
     ACBB (0x9d, AcbExec, B,B,B,BrW), ACBW (0x3d, AcbExec, W,W,W,BrW),
     ACBL (0xf1, AcbExec, L,L,L,BrW),
@@ -296,8 +362,26 @@ enum VaxInstruction {
 
     LOCC (0x3a, LoccExec, B,W,B), SKPC (0x3b, SkpcExec, B,W,B),
 
+    SCANC (0x2a, ScancExec, W,B,B,B), SPANC (0x2b, SpancExec, W,B,B,B),
+
+    MATCHC (0x39, MatchcExec, W,B,W,B),
+
+    MOVTC (0x2e, MovtcExec, W,B,B,B,W,B), MOVTUC (0x2f, MovtucExec, W,B,B,B,W,B),
+
+    CRC (0xb, CrcExec, B,L,W,B),
+
+    INSQUE (0xe, InsqueExec, B,B), REMQUE (0xf, RemqueExec, B,L),
+    INSQHI (0x5c, InsqhiExec, B,Q), INSQTI (0x5d, InsqtiExec, B,Q),
+    REMQHI (0x5e, RemqhiExec, Q,L), REMQTI (0x5f, RemqtiExec, Q,L),
+
     MOVP (0x34, MovpExec, W,B,B),
 
+    ADDP4 (0x20, AddpExec, W,B,W,B), ADDP6 (0x21, AddpExec, W,B,W,B,W,B),
+    SUBP4 (0x22, SubpExec, W,B,W,B), SUBP6 (0x23, SubpExec, W,B,W,B,W,B),
+    MULP (0x25, MulpExec, W,B,W,B,W,B), DIVP (0x27, DivpExec, W,B,W,B,W,B),
+
+    CMPP3 (0x35, CmppExec, W,B,B), CMPP4 (0x37, CmppExec, W,B,W,B),
+
     EDITPC (0x38, EditpcExec, W,B,B,B);
 
     public final int bin;
@@ -328,11 +412,25 @@ enum NopExec implements CodeExec {
     public void execute(List<Operand> oprs, Context context) {}
 }
 
+enum BptExec implements CodeExec {
+    BptExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int addr = context.register[PC] - 1;
+        if (!context.breakpoints.isSet(addr)) {
+            // a BPT in the program itself rather than one planted by -b
+            System.err.printf("Error: breakpoint fault: 0x%x%n", addr);
+            throw new RuntimeException();
+        }
+        context.breakpoints.hit(addr, context);
+    }
+}
+
 enum MovExec implements CodeExec {
     MovExec;
     @Override
     public void execute(List<Operand> oprs, Context context) {
-        IntData srcVal = oprs.get(0).getIntValue();
+        NumData srcVal = oprs.get(0).getValue();
         Operand dest = oprs.get(1);
         dest.setValue(srcVal);
         context.flagN.set( srcVal.isNegValue() );
@@ -381,6 +479,22 @@ enum MovaExec implements CodeExec {
     }
 }
 
+enum PushrExec implements CodeExec {
+    PushrExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        context.pushRegisters(oprs.get(0).getIntValue().uint());
+    }
+}
+
+enum PoprExec implements CodeExec {
+    PoprExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        context.popRegisters(oprs.get(0).getIntValue().uint());
+    }
+}
+
 enum PushaExec implements CodeExec {
     PushaExec;
     @Override
@@ -454,6 +568,24 @@ enum AddExec implements CodeExec {
     }
 }
 
+enum AdawiExec implements CodeExec {
+    AdawiExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        IntData add = oprs.get(0).getIntValue();
+        Operand dest = oprs.get(1);
+        if (dest instanceof Register) {
+            dest.setValue(Calculator.add(dest.getIntValue(), add, context));
+        } else {
+            int addr = ((Address)dest).getAddress();
+            assert (addr & 1) == 0 : "Reserved operand fault";
+            short old = context.memory.getAndAddWord(addr, (short)add.sint());
+            // flags as for ADDW2 from the value actually replaced
+            Calculator.add(new IntData(old, DataType.W), add, context);
+        }
+    }
+}
+
 enum SubExec implements CodeExec {
     SubExec;
     @Override
@@ -500,6 +632,178 @@ enum DivExec implements CodeExec {
     }
 }
 
+enum AdwcExec implements CodeExec {
+    AdwcExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        IntData arg1 = oprs.get(1).getIntValue();
+        IntData arg2 = oprs.get(0).getIntValue();
+        Operand dest = oprs.get(1);
+        IntData sum = Calculator.adwc(arg1, arg2, context);
+        dest.setValue(sum);
+    }
+}
+
+enum SbwcExec implements CodeExec {
+    SbwcExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        IntData arg1 = oprs.get(1).getIntValue();
+        IntData arg2 = oprs.get(0).getIntValue();
+        Operand dest = oprs.get(1);
+        IntData diff = Calculator.sbwc(arg1, arg2, context);
+        dest.setValue(diff);
+    }
+}
+
+enum EmulExec implements CodeExec {
+    EmulExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int mulr = oprs.get(0).getIntValue().sint();
+        int muld = oprs.get(1).getIntValue().sint();
+        int add = oprs.get(2).getIntValue().sint();
+        Operand dest = oprs.get(3);
+        IntData prod = Calculator.emul(mulr, muld, add, context);
+        dest.setValue(prod);
+    }
+}
+
+enum EdivExec implements CodeExec {
+    EdivExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int divr = oprs.get(0).getIntValue().sint();
+        long divd = oprs.get(1).getIntValue().slong();
+        Operand quoDest = oprs.get(2);
+        Operand remDest = oprs.get(3);
+
+        int quo;
+        int rem;
+        long quo64 = divr == 0 ? 0 : divd / divr;
+        if (divr == 0 || quo64 != (int)quo64) {
+            quo = (int)divd;
+            rem = 0;
+            context.flagV.set();
+        } else {
+            quo = (int)quo64;
+            rem = (int)(divd % divr);
+            context.flagV.clear();
+        }
+        quoDest.setValue(new IntData(quo));
+        remDest.setValue(new IntData(rem));
+        context.flagN.set( quo < 0 );
+        context.flagZ.set( quo == 0 );
+        context.flagC.clear();
+    }
+}
+
+enum FaddExec implements CodeExec {
+    FaddExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData arg1 = oprs.get(1).getFloatValue();
+        FloatData arg2 = oprs.get(0).getFloatValue();
+        Operand dest = oprs.size() == 3 ? oprs.get(2) : oprs.get(1);
+        FloatData sum = FloatCalculator.add(arg1, arg2, context);
+        if (sum != null) {
+            dest.setValue(sum);
+        }
+    }
+}
+
+enum FsubExec implements CodeExec {
+    FsubExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData arg1 = oprs.get(1).getFloatValue();
+        FloatData arg2 = oprs.get(0).getFloatValue();
+        Operand dest = oprs.size() == 3 ? oprs.get(2) : oprs.get(1);
+        FloatData diff = FloatCalculator.sub(arg1, arg2, context);
+        if (diff != null) {
+            dest.setValue(diff);
+        }
+    }
+}
+
+enum FmulExec implements CodeExec {
+    FmulExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData arg1 = oprs.get(0).getFloatValue();
+        FloatData arg2 = oprs.get(1).getFloatValue();
+        Operand dest = oprs.size() == 3 ? oprs.get(2) : oprs.get(1);
+        FloatData prod = FloatCalculator.mul(arg1, arg2, context);
+        if (prod != null) {
+            dest.setValue(prod);
+        }
+    }
+}
+
+enum FdivExec implements CodeExec {
+    FdivExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData divisor = oprs.get(0).getFloatValue();
+        FloatData dividend = oprs.get(1).getFloatValue();
+        Operand dest = oprs.size() == 3 ? oprs.get(2) : oprs.get(1);
+        FloatData quo = FloatCalculator.div(dividend, divisor, context);
+        // on divide by zero or overflow the destination is left unchanged
+        if (quo != null) {
+            dest.setValue(quo);
+        }
+    }
+}
+
+enum EmodExec implements CodeExec {
+    EmodExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData mulr = oprs.get(0).getFloatValue();
+        int mulrx = oprs.get(1).getIntValue().uint();
+        FloatData muld = oprs.get(2).getFloatValue();
+        int[] intPart = new int[1];
+        FloatData fract = FloatCalculator.emod(mulr, mulrx, muld, intPart, context);
+        oprs.get(3).setValue(new IntData(intPart[0]));
+        oprs.get(4).setValue(fract);
+    }
+}
+
+enum PolyExec implements CodeExec {
+    PolyExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData arg = oprs.get(0).getFloatValue();
+        int degree = oprs.get(1).getIntValue().uint();
+        int tblAddr = ((Address)oprs.get(2)).getAddress();
+
+        assert degree <= 31 : "Reserved operand fault";
+
+        DataType type = arg.dataType();
+        int tblLen = (degree + 1) * type.size;
+        byte[] table = context.memory.loadBytes(tblAddr, tblLen);
+        FloatData[] coefs = new FloatData[degree + 1];
+        for (int i = 0; i <= degree; i++) {
+            coefs[i] = new FloatData(Arrays.copyOfRange(table, i * type.size, (i + 1) * type.size),
+                                     type);
+        }
+        FloatData result = FloatCalculator.poly(arg, coefs, context);
+        if (result == null) {
+            return;
+        }
+
+        context.setRegisterValue(0, result);
+        if (type == DataType.F) {
+            context.register[1] = 0;
+        } else {
+            context.register[4] = 0;
+            context.register[5] = 0;
+        }
+        context.register[2] = 0;
+        context.register[3] = tblAddr + tblLen;
+    }
+}
+
 enum BitExec implements CodeExec {
     BitExec;
     @Override
@@ -563,7 +867,7 @@ enum ClrExec implements CodeExec {
     @Override
     public void execute(List<Operand> oprs, Context context) {
         Operand dest = oprs.get(0);
-        IntData zero = new IntData(0, dest.dataType);
+        IntData zero = IntData.fromRawBits(0, 0, dest.dataType);
         dest.setValue(zero);
         context.flagN.clear();
         context.flagZ.set();
@@ -646,7 +950,7 @@ enum TstExec implements CodeExec {
     TstExec;
     @Override
     public void execute(List<Operand> oprs, Context context) {
-        IntData srcVal = oprs.get(0).getIntValue();
+        NumData srcVal = oprs.get(0).getValue();
         context.flagN.set( srcVal.isNegValue() );
         context.flagZ.set( srcVal.isZeroValue() );
         context.flagV.clear();
@@ -667,6 +971,16 @@ enum CmpExec implements CodeExec {
     }
 }
 
+enum FcmpExec implements CodeExec {
+    FcmpExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        FloatData lhs = oprs.get(0).getFloatValue();
+        FloatData rhs = oprs.get(1).getFloatValue();
+        FloatCalculator.cmp(lhs, rhs, context);
+    }
+}
+
 enum ExtExec implements CodeExec {
     ExtvExec {
         @Override
@@ -683,38 +997,13 @@ enum ExtExec implements CodeExec {
 
     @Override
     public void execute(List<Operand> oprs, Context context) {
-        int pos = oprs.get(0).getIntValue().uint();
+        int pos = oprs.get(0).getIntValue().sint();
         int size = oprs.get(1).getIntValue().uint();
         Operand base = oprs.get(2);
         Operand dest = oprs.get(3);
 
-        assert size <= 32 : "Reserved operand fault";
-
-        IntData extVal;
-        if (size == 0) {
-            extVal = new IntData(0);
-        }
-        else {
-            long srcVal;
-            if (base instanceof Register) {
-                assert (pos & 0xffffffffL) <= 31 : "Reserved operand fault";
-
-                int regNum = ((Register)base).regNum;
-                srcVal = ((long)context.register[regNum + 1] << 32) | context.register[regNum];
-            } else {
-                int addr = ((Address)base).getAddress() + (pos >>> 5);
-                pos = pos & 31;
-                srcVal =
-                    ((long)context.memory.loadInt(addr + 4, DataType.L).uint() << 32) |
-                    context.memory.loadInt(addr, DataType.L).uint();
-            }
-
-            int lSpace = 64 - (pos + size);
-            int eVal = (int)(isSignExt() ?
-                             srcVal << lSpace >> (lSpace + pos) :
-                             srcVal << lSpace >>> (lSpace + pos));
-            extVal = new IntData(eVal, DataType.L);
-        }
+        int field = BitField.extract(base, pos, size, context);
+        IntData extVal = new IntData(isSignExt() ? BitField.signExtend(field, size) : field);
 
         dest.setValue(extVal);
         context.flagN.set( extVal.isNegValue() );
@@ -729,36 +1018,96 @@ enum InsvExec implements CodeExec {
     InsvExec;
     @Override
     public void execute(List<Operand> oprs, Context context) {
+        int src = oprs.get(0).getIntValue().sint();
+        int pos = oprs.get(1).getIntValue().sint();
         int size = oprs.get(2).getIntValue().uint();
+        BitField.insert(oprs.get(3), pos, size, src, context);
+    }
+}
 
-        assert size <= 32 : "Reserved operand fault";
+enum FfExec implements CodeExec {
+    FfsExec {
+        @Override
+        protected int bitsToFind(int field) {
+            return field;
+        }
+    },
+    FfcExec {
+        @Override
+        protected int bitsToFind(int field) {
+            return ~field;
+        }
+    };
 
-        if (size != 0) {
-            int pos = oprs.get(1).getIntValue().uint();
-            long srcVal = (long)oprs.get(0).getIntValue().uint() << pos;
-            Operand base = oprs.get(3);
-            if (base instanceof Register) {
-                assert (pos & 0xffffffffL) <= 31 : "Reserved operand fault";
-
-                int regNum = ((Register)base).regNum;
-                long orgVal =
-                    ((long)context.register[regNum + 1] << 32) |
-                    context.register[regNum];
-                long mask = (~(0xffffffffffffffffL << size)) << pos;
-                long insVal = (orgVal & ~mask) | (srcVal & mask);
-                context.setRegisterValue(regNum, new IntData(insVal, DataType.Q));
-            } else {
-                int addr = ((Address)base).getAddress() + (pos >>> 5);
-                pos = pos & 31;
-
-                long orgVal =
-                    ((long)context.memory.loadInt(addr + 4, DataType.L).uint() << 32) |
-                    context.memory.loadInt(addr, DataType.L).uint();
-                long mask = (~(0xffffffffffffffffL << size)) << pos;
-                long insVal = (orgVal & ~mask) | (srcVal & mask);
-                context.memory.store(addr, new IntData(insVal, DataType.Q));
-            }
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int startPos = oprs.get(0).getIntValue().sint();
+        int size = oprs.get(1).getIntValue().uint();
+        Operand base = oprs.get(2);
+        Operand dest = oprs.get(3);
+
+        int field = BitField.extract(base, startPos, size, context);
+        int found = size == 0 ? 0 : bitsToFind(field) & (int)(0xffffffffL >>> (32 - size));
+        int index = found == 0 ? size : Integer.numberOfTrailingZeros(found);
+
+        dest.setValue(new IntData(startPos + index));
+        context.flagN.clear();
+        context.flagZ.set( found == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+    }
+
+    protected abstract int bitsToFind(int field);
+}
+
+enum CmpvExec implements CodeExec {
+    CmpvExec {
+        @Override
+        protected boolean isSignExt() {
+            return true;
+        }
+    },
+    CmpzvExec {
+        @Override
+        protected boolean isSignExt() {
+            return false;
+        }
+    };
+
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int pos = oprs.get(0).getIntValue().sint();
+        int size = oprs.get(1).getIntValue().uint();
+        Operand base = oprs.get(2);
+        int src = oprs.get(3).getIntValue().sint();
+
+        int field = BitField.extract(base, pos, size, context);
+        if (isSignExt()) {
+            field = BitField.signExtend(field, size);
         }
+
+        context.flagN.set( field < src );
+        context.flagZ.set( field == src );
+        context.flagV.clear();
+        context.flagC.set( Integer.compareUnsigned(field, src) < 0 );
+    }
+
+    protected abstract boolean isSignExt();
+}
+
+enum RotlExec implements CodeExec {
+    RotlExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int cnt = oprs.get(0).getIntValue().sint();
+        int src = oprs.get(1).getIntValue().sint();
+        Operand dest = oprs.get(2);
+
+        IntData rotVal = new IntData(Integer.rotateLeft(src, cnt));
+        dest.setValue(rotVal);
+        context.flagN.set( rotVal.isNegValue() );
+        context.flagZ.set( rotVal.isZeroValue() );
+        context.flagV.clear();
     }
 }
 
@@ -770,6 +1119,24 @@ enum JmpExec implements CodeExec {
     }
 }
 
+enum JsbExec implements CodeExec {
+    JsbExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int dest = ((Address)oprs.get(0)).getAddress();
+        context.pushReturnAddress();
+        context.register[PC] = dest;
+    }
+}
+
+enum RsbExec implements CodeExec {
+    RsbExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        context.register[PC] = context.popReturnAddress();
+    }
+}
+
 enum BrExec implements CodeExec {
     BrExec {
         @Override
@@ -900,6 +1267,30 @@ enum BbExec implements CodeExec {
         public boolean doesClearBit() {
             return true;
         }
+    },
+    BbssiExec {
+        @Override
+        public boolean doesSetBit() {
+            return true;
+        }
+        @Override
+        public boolean doesBranchOnSet() {
+            return true;
+        }
+        @Override
+        public boolean isInterlocked() {
+            return true;
+        }
+    },
+    BbcciExec {
+        @Override
+        public boolean doesClearBit() {
+            return true;
+        }
+        @Override
+        public boolean isInterlocked() {
+            return true;
+        }
     };
 
     @Override public void execute(List<Operand> oprs, Context context) {
@@ -919,15 +1310,22 @@ enum BbExec implements CodeExec {
             } else if (doesClearBit()) {
                 context.register[regNum] &= ~bit;
             }
+        } else if (isInterlocked()) {
+            int addr = ((Address)base).getAddress() + (pos >> 3);
+            int bit = 1 << (pos & 7);
+            int targetByte = doesSetBit() ?
+                context.memory.getAndSetBits(addr, bit) :
+                context.memory.getAndClearBits(addr, bit);
+            isSet = (targetByte & bit) != 0;
         } else {
             int addr = ((Address)base).getAddress() + (pos >> 3);
-            int targetByte = context.memory.loadInt(addr, DataType.B).uint();
+            int targetByte = context.memory.loadByte(addr);
             int bit = 1 << (pos & 7);
             isSet = (targetByte & bit) != 0;
             if (doesSetBit()) {
-                context.memory.store(addr, new IntData(targetByte | bit, DataType.B));
+                context.memory.storeByte(addr, targetByte | bit);
             } else if (doesClearBit()) {
-                context.memory.store(addr, new IntData(targetByte & ~bit, DataType.B));
+                context.memory.storeByte(addr, targetByte & ~bit);
             }
         }
 
@@ -945,6 +1343,9 @@ enum BbExec implements CodeExec {
     protected boolean doesBranchOnSet() {
         return false;
     }
+    protected boolean isInterlocked() {
+        return false;
+    }
 }
 
 enum BlbExec implements CodeExec {
@@ -998,12 +1399,8 @@ enum CallExec implements CodeExec {
         context.register[SP] &= ~0x3;
 
         int addr = ((Address)oprs.get(1)).getAddress();
-        int entryMask = context.memory.loadInt(addr, DataType.W).uint();
-        for (int i = 11; i >= 0; i--) {
-            if ((entryMask & 1 << i) != 0) {
-                context.push(context.register[i]);
-            }
-        }
+        int entryMask = context.memory.loadWord(addr) & 0xffff;
+        context.pushRegisters(entryMask & 0xfff);
         context.push(context.register[PC]);
         context.push(context.register[FP]);
         context.push(context.register[AP]);
@@ -1052,11 +1449,7 @@ enum RetExec implements CodeExec {
         context.register[PC] = context.pop();
 
         int entryMask = (tmp >> 16) & 0xfff;
-        for (int i = 0; i <= 11; i++) {
-            if ((entryMask & 1 << i) != 0) {
-                context.register[i] = context.pop();
-            }
-        }
+        context.popRegisters(entryMask);
 
         context.register[SP] |= tmp >>> 30;
 
@@ -1079,6 +1472,28 @@ enum ChmkExec implements CodeExec {
     }
 }
 
+enum IndexExec implements CodeExec {
+    IndexExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int subscript = oprs.get(0).getIntValue().sint();
+        int low = oprs.get(1).getIntValue().sint();
+        int high = oprs.get(2).getIntValue().sint();
+        int size = oprs.get(3).getIntValue().sint();
+        int indexIn = oprs.get(4).getIntValue().sint();
+        Operand dest = oprs.get(5);
+
+        IntData indexOut = new IntData((indexIn + subscript) * size);
+        dest.setValue(indexOut);
+        context.flagN.set( indexOut.isNegValue() );
+        context.flagZ.set( indexOut.isZeroValue() );
+        context.flagV.clear();
+        context.flagC.clear();
+
+        assert low <= subscript && subscript <= high : "Subscript range trap";
+    }
+}
+
 enum CaseExec implements CodeExec {
     CaseExec;
     @Override
@@ -1093,8 +1508,7 @@ enum CaseExec implements CodeExec {
 
         if (context.flagC.get() || context.flagZ.get()) {
             int dispAddr = context.register[PC] + offset.uint() * 2;
-            IntData disp = context.memory.loadInt(dispAddr, DataType.W);
-            context.register[PC] += disp.sint();
+            context.register[PC] += context.memory.loadWord(dispAddr);
         } else {
             context.register[PC] += (limit.uint() + 1) * 2;
         }
@@ -1184,53 +1598,184 @@ enum CvtExec implements CodeExec {
     }
 }
 
+enum CvtfExec implements CodeExec {
+    CvtifExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int srcVal = oprs.get(0).getIntValue().sint();
+            Operand dest = oprs.get(1);
+            dest.setValue(FloatCalculator.fromInt(srcVal, dest.dataType, context));
+        }
+    },
+    CvtfiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            FloatData srcVal = oprs.get(0).getFloatValue();
+            Operand dest = oprs.get(1);
+            dest.setValue(FloatCalculator.toInt(srcVal, dest.dataType, false, context));
+        }
+    },
+    CvtrfiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            FloatData srcVal = oprs.get(0).getFloatValue();
+            Operand dest = oprs.get(1);
+            dest.setValue(FloatCalculator.toInt(srcVal, dest.dataType, true, context));
+        }
+    },
+    CvtffExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            FloatData srcVal = oprs.get(0).getFloatValue();
+            Operand dest = oprs.get(1);
+            FloatData cvtVal = FloatCalculator.convert(srcVal, dest.dataType, context);
+            if (cvtVal != null) {
+                dest.setValue(cvtVal);
+            }
+        }
+    }
+}
+
 enum CvtlpExec implements CodeExec {
     CvtlpExec;
     @Override
     public void execute(List<Operand> oprs, Context context) {
-        IntData srcVal = oprs.get(0).getIntValue();
-        long src = (long)srcVal.sint();
+        int src = oprs.get(0).getIntValue().sint();
         int len = oprs.get(1).getIntValue().uint();
         Address dest = (Address)oprs.get(2);
 
-        byte tail = src >= 0 ? (byte)12 : (byte)13;
-        src = Math.abs(src);
-        if (len != 0) {
-            tail += src % 10 << 4;
-            src /= 10;
-            --len;
-        }
+        PackedDecimal.valueOf(src).store(context, dest.getAddress(), len);
 
-        Deque<Byte> bytes = new ArrayDeque<>();
-        bytes.addFirst(tail);
+        context.register[0] = 0;
+        context.register[1] = 0;
+        context.register[2] = 0;
+        context.register[3] = dest.getAddress();
+    }
+}
 
-        while (len-- > 0) {
-            byte val = (byte)(src % 10);
-            src /= 10;
-            if (len-- > 0) {
-                val |= (byte)(src % 10 << 4);
-                src /= 10;
-            }
-            bytes.addFirst(val);
-        }
+enum CvtplExec implements CodeExec {
+    CvtplExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int len = oprs.get(0).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        Operand dest = oprs.get(2);
 
-        int destAddr = dest.getAddress();
-        while (!bytes.isEmpty()) {
-            byte val = bytes.removeFirst();
-            context.memory.store(destAddr++, new IntData(val, DataType.B));
-        }
+        PackedDecimal src = PackedDecimal.load(context, srcAddr, len);
+        IntData cvtVal = new IntData(src.intValue());
 
+        // registers are updated before the destination is stored
         context.register[0] = 0;
-        context.register[1] = 0;
+        context.register[1] = srcAddr;
         context.register[2] = 0;
-        context.register[3] = dest.getAddress();
+        context.register[3] = 0;
+        dest.setValue(cvtVal);
 
-        context.flagN.set( srcVal.isNegValue() );
-        context.flagZ.set( srcVal.isZeroValue() );
+        context.flagN.set( cvtVal.isNegValue() );
+        context.flagZ.set( cvtVal.isZeroValue() );
+        context.flagV.set( src.isIntOverflow() );
         context.flagC.clear();
     }
 }
 
+enum CvtpsExec implements CodeExec {
+    CvtpsExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int srcLen = oprs.get(0).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        int destLen = oprs.get(2).getIntValue().uint();
+        int destAddr = ((Address)oprs.get(3)).getAddress();
+
+        PackedDecimal.load(context, srcAddr, srcLen).storeSeparate(context, destAddr, destLen);
+
+        context.register[0] = 0;
+        context.register[1] = srcAddr;
+        context.register[2] = 0;
+        context.register[3] = destAddr;
+    }
+}
+
+enum CvtspExec implements CodeExec {
+    CvtspExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int srcLen = oprs.get(0).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        int destLen = oprs.get(2).getIntValue().uint();
+        int destAddr = ((Address)oprs.get(3)).getAddress();
+
+        PackedDecimal.loadSeparate(context, srcAddr, srcLen).store(context, destAddr, destLen);
+
+        context.register[0] = 0;
+        context.register[1] = srcAddr;
+        context.register[2] = 0;
+        context.register[3] = destAddr;
+    }
+}
+
+enum CvtptExec implements CodeExec {
+    CvtptExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int srcLen = oprs.get(0).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        int tblAddr = ((Address)oprs.get(2)).getAddress();
+        int destLen = oprs.get(3).getIntValue().uint();
+        int destAddr = ((Address)oprs.get(4)).getAddress();
+
+        PackedDecimal.load(context, srcAddr, srcLen)
+            .storeTrailing(context, tblAddr, destAddr, destLen);
+
+        context.register[0] = 0;
+        context.register[1] = srcAddr;
+        context.register[2] = 0;
+        context.register[3] = destAddr;
+    }
+}
+
+enum CvttpExec implements CodeExec {
+    CvttpExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int srcLen = oprs.get(0).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        int tblAddr = ((Address)oprs.get(2)).getAddress();
+        int destLen = oprs.get(3).getIntValue().uint();
+        int destAddr = ((Address)oprs.get(4)).getAddress();
+
+        PackedDecimal.loadTrailing(context, tblAddr, srcAddr, srcLen)
+            .store(context, destAddr, destLen);
+
+        context.register[0] = 0;
+        context.register[1] = srcAddr;
+        context.register[2] = 0;
+        context.register[3] = destAddr;
+    }
+}
+
+enum AshpExec implements CodeExec {
+    AshpExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int count = oprs.get(0).getIntValue().sint();
+        int srcLen = oprs.get(1).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(2)).getAddress();
+        int round = oprs.get(3).getIntValue().uint() & 0xf;
+        int destLen = oprs.get(4).getIntValue().uint();
+        int destAddr = ((Address)oprs.get(5)).getAddress();
+
+        PackedDecimal.load(context, srcAddr, srcLen)
+            .shift(count, round)
+            .store(context, destAddr, destLen);
+
+        context.register[0] = 0;
+        context.register[1] = srcAddr;
+        context.register[2] = 0;
+        context.register[3] = destAddr;
+    }
+}
+
 enum AcbExec implements CodeExec {
     AcbExec;
     @Override
@@ -1279,13 +1824,16 @@ enum MovcExec implements CodeExec {
 
         int slen = srclen.uint();
         int dlen = destlen.uint();
-        for (; slen > 0 && dlen >0; slen--, dlen--) {
-            IntData byteVal = context.memory.loadInt(srcAddr++, DataType.B);
-            context.memory.store(destAddr++, byteVal);
-        }
-        for (; dlen > 0; dlen--) {
-            context.memory.store(destAddr++, fillVal);
+        int n = Math.min(slen, dlen);
+        // copied as a whole, so overlapping strings move correctly
+        byte[] dest = Arrays.copyOf(context.memory.loadBytes(srcAddr, n), dlen);
+        if (n < dlen) {
+            Arrays.fill(dest, n, dlen, (byte)fillVal.sint());
         }
+        context.memory.storeBytes(destAddr, dest, dlen);
+        slen -= n;
+        srcAddr += n;
+        destAddr += dlen;
 
         context.register[0] = slen;
         context.register[1] = srcAddr;
@@ -1320,30 +1868,26 @@ enum CmpcExec implements CodeExec {
 
         int s1len = str1len.uint();
         int s2len = str2len.uint();
-        COMPC: {
-            for (; s1len > 0 && s2len >0; s1len--, s2len--, str1Addr++, str2Addr++) {
-                IntData str1Val = context.memory.loadInt(str1Addr, DataType.B);
-                IntData str2Val = context.memory.loadInt(str2Addr, DataType.B);
-                Calculator.sub(str1Val, str2Val, context);
-                if (!context.flagZ.get()) {
-                    break COMPC;
-                }
+        int fill = fillVal != null ? fillVal.sint() : 0;
+        int b1 = 0;
+        int b2 = 0;
+        while (s1len > 0 || s2len > 0) {
+            b1 = s1len > 0 ? context.memory.loadByte(str1Addr) : fill;
+            b2 = s2len > 0 ? context.memory.loadByte(str2Addr) : fill;
+            if (b1 != b2) {
+                break;
             }
-            for (; s1len > 0; s1len--, str1Addr++) {
-                IntData str1Val = context.memory.loadInt(str1Addr, DataType.B);
-                Calculator.sub(str1Val, fillVal, context);
-                if (!context.flagZ.get()) {
-                    break COMPC;
-                }
+            if (s1len > 0) {
+                s1len--;
+                str1Addr++;
             }
-            for (; s2len > 0; s2len--, str2Addr++) {
-                IntData str2Val = context.memory.loadInt(str2Addr, DataType.B);
-                Calculator.sub(fillVal, str2Val, context);
-                if (!context.flagZ.get()) {
-                    break COMPC;
-                }
+            if (s2len > 0) {
+                s2len--;
+                str2Addr++;
             }
         }
+        // flags as for CMPB of the last bytes compared
+        Calculator.sub(new IntData(b1, DataType.B), new IntData(b2, DataType.B), context);
 
         context.register[0] = s1len;
         context.register[1] = str1Addr;
@@ -1356,14 +1900,14 @@ enum CmpcExec implements CodeExec {
 enum LoccExec implements CodeExec {
     LoccExec {
         @Override
-        protected boolean isDetected(IntData actual, IntData target) {
-            return actual.uint() == target.uint();
+        protected boolean isDetected(int actual, int target) {
+            return actual == target;
         }
     },
     SkpcExec {
         @Override
-        protected boolean isDetected(IntData actual, IntData target) {
-            return actual.uint() != target.uint();
+        protected boolean isDetected(int actual, int target) {
+            return actual != target;
         }
     };
 
@@ -1374,8 +1918,7 @@ enum LoccExec implements CodeExec {
         int addr = ((Address)oprs.get(2)).getAddress();
 
         for (; len > 0; len--, addr++) {
-            IntData byteVal = context.memory.loadInt(addr, DataType.B);
-            if (isDetected(target, byteVal)) {
+            if (isDetected(context.memory.loadByte(addr), target.sint())) {
                 break;
             }
         }
@@ -1388,7 +1931,394 @@ enum LoccExec implements CodeExec {
         context.flagC.clear();
     }
 
-    protected abstract boolean isDetected(IntData actual, IntData target);
+    protected abstract boolean isDetected(int actual, int target);
+}
+
+enum ScancExec implements CodeExec {
+    ScancExec {
+        @Override
+        protected boolean isDetected(int entry) {
+            return entry != 0;
+        }
+    },
+    SpancExec {
+        @Override
+        protected boolean isDetected(int entry) {
+            return entry == 0;
+        }
+    };
+
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int len = oprs.get(0).getIntValue().uint();
+        int addr = ((Address)oprs.get(1)).getAddress();
+        int tblAddr = ((Address)oprs.get(2)).getAddress();
+        int mask = oprs.get(3).getIntValue().uint();
+
+        byte[] table = context.memory.loadTable(tblAddr);
+        byte[] str = context.memory.loadBytes(addr, len);
+        int i = 0;
+        for (; i < len; i++) {
+            if (isDetected(table[str[i] & 0xff] & mask)) {
+                break;
+            }
+        }
+
+        context.register[0] = len - i;
+        context.register[1] = addr + i;
+        context.register[2] = 0;
+        context.register[3] = tblAddr;
+        context.flagN.clear();
+        context.flagZ.set( context.register[0] == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+    }
+
+    protected abstract boolean isDetected(int entry);
+}
+
+enum MatchcExec implements CodeExec {
+    MatchcExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int objLen = oprs.get(0).getIntValue().uint();
+        int objAddr = ((Address)oprs.get(1)).getAddress();
+        int srcLen = oprs.get(2).getIntValue().uint();
+        int srcAddr = ((Address)oprs.get(3)).getAddress();
+
+        byte[] obj = context.memory.loadBytes(objAddr, objLen);
+        byte[] src = context.memory.loadBytes(srcAddr, srcLen);
+        int pos = indexOf(src, obj);
+        if (pos >= 0) {
+            context.register[0] = 0;
+            context.register[1] = objAddr + objLen;
+            context.register[2] = srcLen - pos - objLen;
+            context.register[3] = srcAddr + pos + objLen;
+        } else {
+            context.register[0] = objLen;
+            context.register[1] = objAddr;
+            context.register[2] = 0;
+            context.register[3] = srcAddr + srcLen;
+        }
+        context.flagN.clear();
+        context.flagZ.set( context.register[0] == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+    }
+
+    // Boyer-Moore-Horspool search
+    private static int indexOf(byte[] src, byte[] obj) {
+        int last = obj.length - 1;
+        if (last < 0) {
+            return 0;
+        }
+        int[] shift = new int[256];
+        Arrays.fill(shift, obj.length);
+        for (int i = 0; i < last; i++) {
+            shift[obj[i] & 0xff] = last - i;
+        }
+        for (int pos = 0; pos + last < src.length; pos += shift[src[pos + last] & 0xff]) {
+            for (int i = last; src[pos + i] == obj[i]; i--) {
+                if (i == 0) {
+                    return pos;
+                }
+            }
+        }
+        return -1;
+    }
+}
+
+enum MovtcExec implements CodeExec {
+    MovtcExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        IntData srclen = oprs.get(0).getIntValue();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        byte fill = (byte)oprs.get(2).getIntValue().sint();
+        int tblAddr = ((Address)oprs.get(3)).getAddress();
+        IntData destlen = oprs.get(4).getIntValue();
+        int destAddr = ((Address)oprs.get(5)).getAddress();
+
+        int slen = srclen.uint();
+        int dlen = destlen.uint();
+        int n = Math.min(slen, dlen);
+        byte[] table = context.memory.loadTable(tblAddr);
+        byte[] src = context.memory.loadBytes(srcAddr, n);
+        byte[] dest = new byte[dlen];
+        for (int i = 0; i < n; i++) {
+            dest[i] = table[src[i] & 0xff];
+        }
+        Arrays.fill(dest, n, dlen, fill);
+        context.memory.storeBytes(destAddr, dest, dlen);
+
+        context.register[0] = slen - n;
+        context.register[1] = srcAddr + n;
+        context.register[2] = 0;
+        context.register[3] = tblAddr;
+        context.register[4] = 0;
+        context.register[5] = destAddr + dlen;
+        // Set flags
+        Calculator.sub(srclen, destlen, context);
+        context.flagV.clear();
+    }
+}
+
+enum MovtucExec implements CodeExec {
+    MovtucExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        IntData srclen = oprs.get(0).getIntValue();
+        int srcAddr = ((Address)oprs.get(1)).getAddress();
+        byte esc = (byte)oprs.get(2).getIntValue().sint();
+        int tblAddr = ((Address)oprs.get(3)).getAddress();
+        IntData destlen = oprs.get(4).getIntValue();
+        int destAddr = ((Address)oprs.get(5)).getAddress();
+
+        int slen = srclen.uint();
+        int dlen = destlen.uint();
+        int n = Math.min(slen, dlen);
+        byte[] table = context.memory.loadTable(tblAddr);
+        byte[] src = context.memory.loadBytes(srcAddr, n);
+        byte[] dest = new byte[n];
+        int i = 0;
+        for (; i < n; i++) {
+            byte b = table[src[i] & 0xff];
+            if (b == esc) {
+                break;
+            }
+            dest[i] = b;
+        }
+        context.memory.storeBytes(destAddr, dest, i);
+
+        context.register[0] = slen - i;
+        context.register[1] = srcAddr + i;
+        context.register[2] = 0;
+        context.register[3] = tblAddr;
+        context.register[4] = dlen - i;
+        context.register[5] = destAddr + i;
+        // Set flags
+        Calculator.sub(srclen, destlen, context);
+        context.flagV.set( i < n );
+    }
+}
+
+enum CrcExec implements CodeExec {
+    CrcExec;
+
+    // not thread safe
+    private byte[] cachedTable;
+    private final int[] byteTable = new int[256];
+
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int tblAddr = ((Address)oprs.get(0)).getAddress();
+        int crc = oprs.get(1).getIntValue().sint();
+        int len = oprs.get(2).getIntValue().uint();
+        int addr = ((Address)oprs.get(3)).getAddress();
+
+        int[] table = expandTable(context.memory.loadBytes(tblAddr, 64));
+        byte[] stream = context.memory.loadBytes(addr, len);
+        for (byte b : stream) {
+            crc = table[(crc ^ b) & 0xff] ^ crc >>> 8;
+        }
+
+        context.register[0] = crc;
+        context.register[1] = 0;
+        context.register[2] = 0;
+        context.register[3] = addr + len;
+        context.flagN.set( crc < 0 );
+        context.flagZ.set( crc == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+    }
+
+    /**
+     * Expands the 16-longword nibble table into the table for a whole byte,
+     * i.e. two nibble steps of crc = (crc >>> 4) ^ tbl[crc & 0xf] applied to
+     * each byte value. The bits above the byte only shift through those
+     * steps, so the result is identical to the nibble-wise definition.
+     */
+    private int[] expandTable(byte[] tbl) {
+        if (!Arrays.equals(tbl, cachedTable)) {
+            int[] nibbleTable = new int[16];
+            for (int i = 0; i < 16; i++) {
+                nibbleTable[i] = (tbl[i * 4] & 0xff) | (tbl[i * 4 + 1] & 0xff) << 8 |
+                    (tbl[i * 4 + 2] & 0xff) << 16 | tbl[i * 4 + 3] << 24;
+            }
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                crc = crc >>> 4 ^ nibbleTable[crc & 0xf];
+                crc = crc >>> 4 ^ nibbleTable[crc & 0xf];
+                byteTable[i] = crc;
+            }
+            cachedTable = tbl;
+        }
+        return byteTable;
+    }
+}
+
+/**
+ * Queue instructions. Entries are linked through longword pairs of
+ * (forward link, backward link); the absolute queues hold addresses and
+ * the self-relative ones hold displacements from the entry itself.
+ */
+enum QueueExec implements CodeExec {
+    InsqueExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int entry = ((Address)oprs.get(0)).getAddress();
+            int pred = ((Address)oprs.get(1)).getAddress();
+            Context.Memory memory = context.memory;
+
+            int succ = memory.loadLongword(pred);
+            memory.storeLongword(entry, succ);
+            memory.storeLongword(entry + 4, pred);
+            memory.storeLongword(succ + 4, entry);
+            memory.storeLongword(pred, entry);
+
+            setLinkFlags(succ, pred, context);
+        }
+    },
+    RemqueExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int entry = ((Address)oprs.get(0)).getAddress();
+            Context.Memory memory = context.memory;
+
+            int succ = memory.loadLongword(entry);
+            int pred = memory.loadLongword(entry + 4);
+            memory.storeLongword(pred, succ);
+            memory.storeLongword(succ + 4, pred);
+            oprs.get(1).setValue(new IntData(entry));
+
+            setLinkFlags(succ, pred, context);
+            // the header itself was removed: the queue was empty
+            context.flagV.set( entry == pred );
+        }
+    },
+    InsqhiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int entry = ((Address)oprs.get(0)).getAddress();
+            int header = ((Address)oprs.get(1)).getAddress();
+            Context.Memory memory = context.memory;
+            assert ((entry | header) & 7) == 0 : "Reserved operand fault";
+            if (!acquire(header, context)) {
+                return;
+            }
+
+            int tmp = memory.loadLongword(header) & ~1;
+            memory.storeLongword(entry, tmp + header - entry);
+            memory.storeLongword(entry + 4, header - entry);
+            memory.storeLongword(header + tmp + 4, entry - (header + tmp));
+            // releases the interlock
+            memory.storeLongword(header, entry - header);
+
+            context.flagZ.set( tmp == 0 );
+        }
+    },
+    InsqtiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int entry = ((Address)oprs.get(0)).getAddress();
+            int header = ((Address)oprs.get(1)).getAddress();
+            Context.Memory memory = context.memory;
+            assert ((entry | header) & 7) == 0 : "Reserved operand fault";
+            if (!acquire(header, context)) {
+                return;
+            }
+
+            boolean wasEmpty = (memory.loadLongword(header) & ~1) == 0;
+            int pred = header + memory.loadLongword(header + 4);
+            memory.storeLongword(entry, header - entry);
+            memory.storeLongword(entry + 4, pred - entry);
+            memory.storeLongword(pred, entry - pred);
+            memory.storeLongword(header + 4, entry - header);
+            release(header, context);
+
+            context.flagZ.set( wasEmpty );
+        }
+    },
+    RemqhiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int header = ((Address)oprs.get(0)).getAddress();
+            Context.Memory memory = context.memory;
+            assert (header & 7) == 0 : "Reserved operand fault";
+            if (!acquire(header, context)) {
+                context.flagV.set();
+                return;
+            }
+
+            int tmp = memory.loadLongword(header) & ~1;
+            int entry = header + tmp;
+            if (tmp != 0) {
+                int succ = entry + memory.loadLongword(entry);
+                memory.storeLongword(succ + 4, header - succ);
+                memory.storeLongword(header, succ - header);
+            } else {
+                release(header, context);
+            }
+            oprs.get(1).setValue(new IntData(entry));
+
+            context.flagZ.set( memory.loadLongword(header) == 0 );
+            context.flagV.set( tmp == 0 );
+        }
+    },
+    RemqtiExec {
+        @Override
+        public void execute(List<Operand> oprs, Context context) {
+            int header = ((Address)oprs.get(0)).getAddress();
+            Context.Memory memory = context.memory;
+            assert (header & 7) == 0 : "Reserved operand fault";
+            if (!acquire(header, context)) {
+                context.flagV.set();
+                return;
+            }
+
+            boolean wasEmpty = (memory.loadLongword(header) & ~1) == 0;
+            int entry = header + memory.loadLongword(header + 4);
+            if (!wasEmpty) {
+                int pred = entry + memory.loadLongword(entry + 4);
+                memory.storeLongword(pred, header - pred);
+                memory.storeLongword(header + 4, pred - header);
+            }
+            release(header, context);
+            oprs.get(1).setValue(new IntData(entry));
+
+            context.flagZ.set( memory.loadLongword(header) == 0 );
+            context.flagV.set( wasEmpty );
+        }
+    };
+
+    private static void setLinkFlags(int succ, int pred, Context context) {
+        context.flagN.set( succ < pred );
+        context.flagZ.set( succ == pred );
+        context.flagV.clear();
+        context.flagC.set( Integer.compareUnsigned(succ, pred) < 0 );
+    }
+
+    /**
+     * Sets the secondary interlock, bit 0 of the header's forward link.
+     * Returns false with C set when another instruction holds it.
+     */
+    private static boolean acquire(int header, Context context) {
+        context.flagN.clear();
+        context.flagZ.clear();
+        context.flagV.clear();
+        int link = context.memory.loadLongword(header);
+        if ((link & 1) != 0) {
+            context.flagC.set();
+            return false;
+        }
+        context.flagC.clear();
+        context.memory.storeLongword(header, link | 1);
+        return true;
+    }
+
+    private static void release(int header, Context context) {
+        context.memory.storeLongword(header, context.memory.loadLongword(header) & ~1);
+    }
 }
 
 enum MovpExec implements CodeExec {
@@ -1398,47 +2328,112 @@ enum MovpExec implements CodeExec {
         int len = oprs.get(0).getIntValue().uint();
         int srcAddr = ((Address)oprs.get(1)).getAddress();
         int destAddr = ((Address)oprs.get(2)).getAddress();
-        int mostSigSrcAddr = srcAddr;
-        int mostSigDestAddr = destAddr;
+        boolean preFlagC = context.flagC.get();
 
-        int byteslen = len / 2 + 1;
-        for (; byteslen > 0; byteslen--) {
-            IntData byteVal = context.memory.loadInt(srcAddr++, DataType.B);
-            context.memory.store(destAddr++, byteVal);
-        }
+        PackedDecimal.load(context, srcAddr, len).store(context, destAddr, len);
+        context.flagC.set(preFlagC);
 
         context.register[0] = 0;
-        context.register[1] = mostSigSrcAddr;
+        context.register[1] = srcAddr;
         context.register[2] = 0;
-        context.register[3] = mostSigDestAddr;
-        context.flagN.set( isNegativePacked(destAddr, len, context) );
-        context.flagZ.set( isZeroPacked(destAddr, len, context) );
-        context.flagV.clear();
+        context.register[3] = destAddr;
     }
+}
 
-    private boolean isNegativePacked(int addr, int len, Context context) {
-        int signAddr = addr + len / 2;
-        byte sign = (byte)(context.memory.loadInt(signAddr, DataType.B).uint() & 0xf);
-        switch (sign) {
-        case 0xa: case 0xc: case 0xe: case 0xf:
-            return false;
-        case 0xb: case 0xd:
-            return true;
-        default:
-            assert false : "Invalid Packed decimal string";
-            return false;
+enum ArithpExec implements CodeExec {
+    AddpExec {
+        @Override
+        protected PackedDecimal calc(PackedDecimal arg1, PackedDecimal arg2) {
+            return PackedDecimal.add(arg1, arg2);
+        }
+    },
+    SubpExec {
+        @Override
+        protected PackedDecimal calc(PackedDecimal arg1, PackedDecimal arg2) {
+            return PackedDecimal.sub(arg1, arg2);
+        }
+    },
+    MulpExec {
+        @Override
+        protected PackedDecimal calc(PackedDecimal arg1, PackedDecimal arg2) {
+            return PackedDecimal.mul(arg1, arg2);
+        }
+    },
+    DivpExec {
+        @Override
+        protected PackedDecimal calc(PackedDecimal arg1, PackedDecimal arg2) {
+            return PackedDecimal.div(arg1, arg2);
+        }
+    };
+
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int len1 = oprs.get(0).getIntValue().uint();
+        int addr1 = ((Address)oprs.get(1)).getAddress();
+        int len2 = oprs.get(2).getIntValue().uint();
+        int addr2 = ((Address)oprs.get(3)).getAddress();
+        int destLen;
+        int destAddr;
+        if (oprs.size() == 6) {
+            destLen = oprs.get(4).getIntValue().uint();
+            destAddr = ((Address)oprs.get(5)).getAddress();
+        } else {
+            destLen = len2;
+            destAddr = addr2;
+        }
+
+        PackedDecimal arg2 = PackedDecimal.load(context, addr1, len1);
+        PackedDecimal arg1 = PackedDecimal.load(context, addr2, len2);
+        PackedDecimal result = calc(arg1, arg2);
+        if (result != null) {
+            result.store(context, destAddr, destLen);
+        } else {
+            // divide by zero
+            context.flagV.set();
+            context.flagC.clear();
+        }
+
+        context.register[0] = 0;
+        context.register[1] = addr1;
+        context.register[2] = 0;
+        context.register[3] = addr2;
+        if (oprs.size() == 6) {
+            context.register[4] = 0;
+            context.register[5] = destAddr;
         }
     }
 
-    private boolean isZeroPacked(int addr, int len, Context context) {
-        int numslen = len / 2;
-        for (; numslen > 0; numslen--) {
-            int val = context.memory.loadInt(addr++, DataType.B).uint();
-            if (val != 0) {
-                return false;
-            }
+    protected abstract PackedDecimal calc(PackedDecimal arg1, PackedDecimal arg2);
+}
+
+enum CmppExec implements CodeExec {
+    CmppExec;
+    @Override
+    public void execute(List<Operand> oprs, Context context) {
+        int len1 = oprs.get(0).getIntValue().uint();
+        int addr1 = ((Address)oprs.get(1)).getAddress();
+        int len2;
+        int addr2;
+        if (oprs.size() == 4) {
+            len2 = oprs.get(2).getIntValue().uint();
+            addr2 = ((Address)oprs.get(3)).getAddress();
+        } else {
+            len2 = len1;
+            addr2 = ((Address)oprs.get(2)).getAddress();
         }
-        return (addr & 0xf0) == 0;
+
+        PackedDecimal lhs = PackedDecimal.load(context, addr1, len1);
+        PackedDecimal rhs = PackedDecimal.load(context, addr2, len2);
+        int cmp = PackedDecimal.compare(lhs, rhs);
+
+        context.register[0] = 0;
+        context.register[1] = addr1;
+        context.register[2] = 0;
+        context.register[3] = addr2;
+        context.flagN.set( cmp < 0 );
+        context.flagZ.set( cmp == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
     }
 }
 
@@ -1459,7 +2454,7 @@ enum EditpcExec implements CodeExec {
 
         assert srcLen <= 31 : "Reserved operand fault";
 
-        context.flagN.set( isNegativePacked(srcAddr, srcLen) );
+        context.flagN.set( PackedDecimal.isNegativePacked(context, srcAddr, srcLen) );
         setSignChar((byte)(context.flagN.get() ? '-' : ' '));
         setFillChar((byte)' ');
         initDigits(srcAddr, srcLen);
@@ -1589,20 +2584,6 @@ enum EditpcExec implements CodeExec {
         return (byte)(val + '0');
     }
 
-    private boolean isNegativePacked(int addr, int len) {
-        int signAddr = addr + len / 2;
-        byte sign = (byte)(context.memory.loadInt(signAddr, DataType.B).uint() & 0xf);
-        switch (sign) {
-        case 0xa: case 0xc: case 0xe: case 0xf:
-            return false;
-        case 0xb: case 0xd:
-            return true;
-        default:
-            assert false : "Invalid Packed decimal string";
-            return false;
-        }
-    }
-
     private void initDigits(int addr, int len) {
         srcDigits.clear();
         destChars.clear();
@@ -1656,6 +2637,71 @@ class Nullcode extends Opcode {
     }
 }
 
+/**
+ * Variable-length bit field access. A field of up to 32 bits starts at a
+ * signed bit position from its base byte, or lies in the register pair
+ * Rn+1'Rn when the base is a register.
+ */
+class BitField {
+    /**
+     * Returns the field zero-extended.
+     */
+    public static int extract(Operand base, int pos, int size, Context context) {
+        assert size <= 32 : "Reserved operand fault";
+        if (size == 0) {
+            return 0;
+        }
+
+        long srcVal;
+        if (base instanceof Register) {
+            assert (pos & 0xffffffffL) <= 31 : "Reserved operand fault";
+            srcVal = loadRegisterPair(((Register)base).regNum, context);
+        } else {
+            int addr = ((Address)base).getAddress() + (pos >> 3);
+            pos &= 7;
+            srcVal = (context.memory.loadLongword(addr + 4) & 0xffffffffL) << 32 |
+                context.memory.loadLongword(addr) & 0xffffffffL;
+        }
+        return (int)(srcVal >>> pos & 0xffffffffL >>> (32 - size));
+    }
+
+    public static void insert(Operand base, int pos, int size, int val, Context context) {
+        assert size <= 32 : "Reserved operand fault";
+        if (size == 0) {
+            return;
+        }
+
+        long mask = (0xffffffffL >>> (32 - size)) << (pos & 31);
+        long insVal = (val & 0xffffffffL) << (pos & 31) & mask;
+        if (base instanceof Register) {
+            assert (pos & 0xffffffffL) <= 31 : "Reserved operand fault";
+            int regNum = ((Register)base).regNum;
+            long orgVal = loadRegisterPair(regNum, context);
+            context.setRegisterValue(regNum, new IntData(orgVal & ~mask | insVal, DataType.Q));
+        } else {
+            int addr = ((Address)base).getAddress() + (pos >> 3);
+            mask = mask >>> (pos & 31) << (pos & 7);
+            insVal = insVal >>> (pos & 31) << (pos & 7);
+            // rewrite only the bytes the field touches
+            int nBytes = ((pos & 7) + size + 7) >> 3;
+            byte[] bytes = context.memory.loadBytes(addr, nBytes);
+            for (int i = 0; i < nBytes; i++) {
+                int m = (int)(mask >>> (i << 3));
+                bytes[i] = (byte)(bytes[i] & ~m | (int)(insVal >>> (i << 3)) & m);
+            }
+            context.memory.storeBytes(addr, bytes, nBytes);
+        }
+    }
+
+    public static int signExtend(int field, int size) {
+        return size == 0 ? 0 : field << (32 - size) >> (32 - size);
+    }
+
+    private static long loadRegisterPair(int regNum, Context context) {
+        long high = regNum < PC ? context.register[regNum + 1] : 0;
+        return high << 32 | context.register[regNum] & 0xffffffffL;
+    }
+}
 
 class Calculator {
     public static IntData add(IntData arg1, IntData arg2, boolean addCarry, Context context) {
@@ -1687,6 +2733,39 @@ class Calculator {
         return diff;
     }
 
+    public static IntData adwc(IntData arg1, IntData arg2, Context context) {
+        int a = arg1.sint();
+        int b = arg2.sint();
+        long usum = (a & 0xffffffffL) + (b & 0xffffffffL) + (context.flagC.get() ? 1 : 0);
+        int sum = (int)usum;
+        context.flagN.set( sum < 0 );
+        context.flagZ.set( sum == 0 );
+        context.flagV.set( ((a ^ sum) & (b ^ sum)) < 0 );
+        context.flagC.set( usum >>> 32 != 0 );
+        return new IntData(sum);
+    }
+
+    public static IntData sbwc(IntData arg1, IntData arg2, Context context) {
+        int a = arg1.sint();
+        int b = arg2.sint();
+        long udiff = (a & 0xffffffffL) - (b & 0xffffffffL) - (context.flagC.get() ? 1 : 0);
+        int diff = (int)udiff;
+        context.flagN.set( diff < 0 );
+        context.flagZ.set( diff == 0 );
+        context.flagV.set( ((a ^ b) & (a ^ diff)) < 0 );
+        context.flagC.set( udiff < 0 );
+        return new IntData(diff);
+    }
+
+    public static IntData emul(int mulr, int muld, int add, Context context) {
+        long prod = (long)mulr * muld + add;
+        context.flagN.set( prod < 0 );
+        context.flagZ.set( prod == 0 );
+        context.flagV.clear();
+        context.flagC.clear();
+        return new IntData(prod);
+    }
+
     public static IntData mul(IntData arg1, IntData arg2, Context context) {
         long product64b = (long)arg1.sint() * arg2.sint();
         IntData prod = new IntData((int)product64b, arg1.dataType());
@@ -1719,51 +2798,20 @@ class Calculator {
 
 /* Not Implemented
     HALT (0x0), REI   (0x2),
-    BPT (0x3), RET   (0x4),
-    RSB (0x5), LDPCTX (0x6),
-    SVPCTX (0x7), CVTPS (0x8, W,B,W,B),
-    CVTSP (0x9,W,B,W,B), INDEX (0xa, L,L,L,L,L,L),
-    CRC (0xb, B,L,W,B), PROBER (0xc, B,W,B),
-    PROBEW (0xd, B,W,B), INSQUE (0xe, B,B),
-    REMQUE (0xf, B,W), BSBB (0x10, BrB),
-    JSB (0x16, B),
-    ADDP4 (0x20, W,B,W,B), ADDP6 (0x21, W,B,W,B,W,B),
-    SUBP4 (0x22, W,B,W,B), SUBP6 (0x23, W,B,W,B,W,B),
-    CVTPT (0x24, W,B,B,W,B), MULP (0x25, W,B,W,B,W,B),
-    CVTTP (0x26, W,B,B,W,B), DIVP (0x27, W,B,W,B,W,B),
-    SCANC (0x2a, W,B,B,B), SPANC (0x2b, W,B,B,B),
-    MOVTC (0x2e, W,B,B,B,W,B), MOVTUC (0x2f, W,B,B,B,W,B),
-    BSBW  (0x30, BrW), CMPP3 (0x35, W,B,B),
-    CVTPL (0x36, W,B,L), CMPP4 (0x37, W,B,W,B),
-    MATCHC(0x39, W,B,W,B),
-    MULF2 (0x44, F,F), MULG2 (0x44fd, G,G),
-    MULF3 (0x45, F,F,F), MULG3 (0x45fd, G,G,G),
-    DIVF2 (0x46, F,F), DIVG2 (0x46fd, G,G),
-    DIVF3 (0x47, F,F,F), DIVG3 (0x47fd, G,G,G),
+    RET   (0x4),
+    LDPCTX (0x6),
+    SVPCTX (0x7),
+    PROBER (0xc, B,W,B),
+    PROBEW (0xd, B,W,B),
     ACBF (0x4f, F,F,F,BrW), ACBG (0x4ffd, G,G,G,BrW),
-    EMODF (0x54, F,B,F,L,F), EMODG (0x54fd, G,W,G,L,G),
-    POLYF (0x55, F,W,B), POLYG (0x55fd, G,W,B),
-    ADAWI (0x58, W,W),
-    INSQHI (0x5c, B,Q), INSQTI (0x5d, B,Q),
-    REMQHI (0x5e, Q,L), REMQTI (0x5f, Q,L),
-    MULD2 (0x64, D,D), MULH2 (0x64fd, H,H),
-    MULD3 (0x65, D,D,D), MULH3 (0x65fd, H,H,H),
-    DIVD2 (0x66, D,D), DIVH2 (0x66fd, H,H),
-    DIVD3 (0x67, D,D,D), DIVH3 (0x67fd, H,H,H),
     ACBD (0x6f, D,D,D,BrW), ACBH (0x6ffd, H,H,H,BrW),
-    EMODD (0x74, D,B,D,L,D), EMODH (0x74fd, H,W,H,L,H),
-    POLYD (0x75, D,W,B), POLYH (0x75fd, H,W,B),
-    EMUL (0x7a, L,L,L,Q), EDIV (0x7b, L,Q,L,L),
-    ROTL  (0x9c, B,L,L),
+    EMODH (0x74fd, H,W,H,L,H),
+    POLYH (0x75fd, H,W,B),
     BISPSW (0xb8, W), BICPSW (0xb9, W),
-    POPR (0xba, W), PUSHR (0xbb, W),
     CHME (0xbd, W), CHMS (0xbe, W),
     CHMU (0xbf, W),
-    ADWC (0xd8, L,L), SBWC (0xd9, L,L),
     MTPR (0xda, L,L), MFPR (0xdb, L,L),
     MOVPSL (0xdc, L),
-    FFS (0xea, L,B,B,L), FFC (0xeb, L,B,B,L),
-    CMPV (0xec, L,B,B,L), CMPZV (0xed, L,B,B,L),
-    ASHP (0xf8, B,W,B,B,W,B), XFC (0xfc),
+    XFC (0xfc),
     BUGL (0xfdff, L), BUGW (0xfeff, W);
 */
@@ -1,7 +1,5 @@
 package vax_interpreter;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import static vax_interpreter.Util.*;
 
 abstract class Operand {
@@ -119,9 +117,11 @@ abstract class Address extends Operand {
 class BranchAddress extends Address {
     protected BranchAddress(Context context, DataType dataType) {
         super(context, dataType);
-        IntData offset = context.memory.loadInt(context.register[PC], dataType);
+        int offset = dataType == DataType.BrB ?
+            context.memory.loadByte(context.register[PC]) :
+            context.memory.loadWord(context.register[PC]);
         context.register[PC] += dataType.size;
-        this.addr = context.pc() + offset.sint();
+        this.addr = context.pc() + offset;
         this.len = dataType.size;
     }
 
@@ -140,25 +140,18 @@ class Literal extends Address {
 
     @Override
     public NumData getValue() {
-        ByteBuffer bbuf = ByteBuffer.allocate(dataType.size).order(ByteOrder.LITTLE_ENDIAN);
-        int val = context.memory.loadInt(addr, DataType.B).uint();
         switch (dataType) {
         default:
         case B: case W: case L: case Q: case O:
-            return new IntData(val, dataType);
+            return IntData.fromRawBits(val, 0, dataType);
         case F:
-            return new IntData(bbuf.putInt(val << 4 | 0x4000).array(),
-                               dataType);
         case D:
-            return new FloatData(bbuf.putInt(val << 4 | 0x4000).putInt(0).array(),
-                                 dataType);
+            return FloatData.fromRawBits(val << 4 | 0x4000, 0, dataType);
         case G:
-            return new FloatData(bbuf.putInt(val << 1 | 0x4000).putInt(0).array(),
-                                 dataType);
+            return FloatData.fromRawBits(val << 1 | 0x4000, 0, dataType);
         case H:
-            return new FloatData(bbuf.putInt(val >> 3 | 0x4000 | val << 29)
-                                     .putInt(0).putInt(0).putInt(0).array(),
-                                 dataType);
+            return FloatData.fromRawBits((val >> 3 | 0x4000 | val << 29) & 0xffffffffL, 0,
+                                         dataType);
         }
     }
 
@@ -194,7 +187,7 @@ class Register extends Operand {
     }
 
     @Override
-    public IntData getValue() {
+    public NumData getValue() {
         return context.getRegisterValue(regNum, dataType);
     }
 
@@ -261,7 +254,7 @@ class AutoIncrementDeferred extends Address {
     protected AutoIncrementDeferred(Context context, DataType dataType) {
         super(context, dataType);
         this.regNum = context.readText() & 0xf;
-        this.addr = context.memory.loadInt(context.register[regNum], DataType.L).uint();
+        this.addr = context.memory.loadLongword(context.register[regNum]);
         context.register[regNum] += 4;
         this.len = isPC(regNum) ? 5 : 1;
     }
@@ -281,10 +274,9 @@ class Displacement extends Address {
         super(context, dataType);
         int head = context.readText();
         int size = 1 << ((head >>> 5) - 5);  // 1, 2, 4 bytes
-        DataType dispType = size == 1 ? DataType.B :
-                            size == 2 ? DataType.W :
-                            /*      4*/ DataType.L;
-        this.disp = context.memory.loadInt(context.register[PC], dispType).sint();
+        this.disp = size == 1 ? context.memory.loadByte(context.register[PC]) :
+                    size == 2 ? context.memory.loadWord(context.register[PC]) :
+                    /*      4*/ context.memory.loadLongword(context.register[PC]);
         context.register[PC] += size;
         this.regNum = head & 0xf;
         this.addr = disp + context.register[regNum];
@@ -306,7 +298,7 @@ class DisplacementDeferred extends Address {
     protected DisplacementDeferred(Context context, DataType dataType) {
         super(context, dataType);
         this.displacement = new Displacement(context, dataType);
-        this.addr = context.memory.loadInt(displacement.addr, DataType.L).uint();
+        this.addr = context.memory.loadLongword(displacement.addr);
         this.len = displacement.len();
     }
 
@@ -0,0 +1,521 @@
+package vax_interpreter;
+
+class PackedDecimal {
+    public static final int MAX_LENGTH = 31;
+
+    // magnitudes below this limit are calculated with long arithmetic
+    private static final long LONG_LIMIT = 1_000_000_000_000_000_000L;
+
+    // packed byte (two digits) -> binary value
+    private static final int[] PAIR_VALUE = new int[256];
+    // binary value (0..99) -> packed byte
+    private static final byte[] VALUE_PAIR = new byte[100];
+    private static final long[] POW10 = new long[19];
+    static {
+        for (int b = 0; b < 256; b++) {
+            PAIR_VALUE[b] = (b >>> 4) * 10 + (b & 0xf);
+        }
+        for (int v = 0; v < 100; v++) {
+            VALUE_PAIR[v] = (byte)((v / 10) << 4 | v % 10);
+        }
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final boolean negative;
+    private final long value;     // magnitude, valid when digits == null
+    private final byte[] digits;  // magnitude, least significant digit first
+
+    private PackedDecimal(boolean negative, long value) {
+        this.negative = negative;
+        this.value = value;
+        this.digits = null;
+    }
+
+    private PackedDecimal(boolean negative, byte[] digits) {
+        this.negative = negative;
+        this.value = 0;
+        this.digits = digits;
+    }
+
+    public static PackedDecimal load(Context context, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        byte[] bytes = context.memory.loadBytes(addr, len / 2 + 1);
+        int last = bytes.length - 1;
+        boolean negative = isNegativeSign(bytes[last] & 0xf);
+
+        if (len <= 18) {
+            long val = 0;
+            int i = 0;
+            if (len % 2 == 0 && last > 0) {
+                val = bytes[i++] & 0xf;
+            }
+            for (; i < last; i++) {
+                val = val * 100 + PAIR_VALUE[bytes[i] & 0xff];
+            }
+            if (len > 0) {
+                val = val * 10 + (bytes[last] >>> 4 & 0xf);
+            }
+            return new PackedDecimal(negative, val);
+        } else {
+            byte[] digits = new byte[len];
+            for (int k = 0; k < len; k++) {
+                int b = bytes[last - (k + 1) / 2];
+                digits[k] = (byte)((k & 1) == 0 ? b >>> 4 & 0xf : b & 0xf);
+            }
+            return new PackedDecimal(negative, digits);
+        }
+    }
+
+    public static PackedDecimal valueOf(int val) {
+        return new PackedDecimal(val < 0, Math.abs((long)val));
+    }
+
+    /**
+     * Loads a leading separate numeric string, a sign character followed by len digits.
+     */
+    public static PackedDecimal loadSeparate(Context context, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        byte[] chars = context.memory.loadBytes(addr, len + 1);
+        boolean negative = false;
+        switch (chars[0]) {
+        case '+': case ' ':
+            break;
+        case '-':
+            negative = true;
+            break;
+        default:
+            assert false : "Reserved operand fault";
+        }
+        return fromNumeric(negative, chars, 1, len);
+    }
+
+    /**
+     * Loads a trailing numeric string of len digits. The last character, which
+     * holds the sign, is translated into a packed byte through the table.
+     */
+    public static PackedDecimal loadTrailing(Context context, int tblAddr, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        if (len == 0) {
+            return new PackedDecimal(false, 0);
+        }
+        byte[] chars = context.memory.loadBytes(addr, len);
+        int code = context.memory.loadInt(tblAddr + (chars[len - 1] & 0xff), DataType.B).uint();
+        chars[len - 1] = (byte)('0' + (code >>> 4));
+        return fromNumeric(isNegativeSign(code & 0xf), chars, 0, len);
+    }
+
+    private static PackedDecimal fromNumeric(boolean negative, byte[] chars, int off, int len) {
+        if (len <= 18) {
+            long val = 0;
+            for (int i = off; i < off + len; i++) {
+                val = val * 10 + numericDigit(chars[i]);
+            }
+            return new PackedDecimal(negative, val);
+        } else {
+            byte[] digits = new byte[len];
+            for (int k = 0; k < len; k++) {
+                digits[k] = (byte)numericDigit(chars[off + len - 1 - k]);
+            }
+            return new PackedDecimal(negative, digits);
+        }
+    }
+
+    private static int numericDigit(byte c) {
+        assert '0' <= c && c <= '9' : "Reserved operand fault";
+        return c & 0xf;
+    }
+
+    public static boolean isNegativePacked(Context context, int addr, int len) {
+        int signAddr = addr + len / 2;
+        return isNegativeSign(context.memory.loadInt(signAddr, DataType.B).uint() & 0xf);
+    }
+
+    public static boolean isNegativeSign(int sign) {
+        switch (sign) {
+        case 0xa: case 0xc: case 0xe: case 0xf:
+            return false;
+        case 0xb: case 0xd:
+            return true;
+        default:
+            assert false : "Invalid Packed decimal string";
+            return false;
+        }
+    }
+
+    /**
+     * Stores the value into a packed decimal string of len digits
+     * and sets the condition codes of the decimal instructions.
+     */
+    public void store(Context context, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        byte[] bytes = new byte[len / 2 + 1];
+        int last = bytes.length - 1;
+        boolean overflow;
+
+        if (digits == null) {
+            long val = value;
+            if (len > 0) {
+                bytes[last] = (byte)(val % 10 << 4);
+                val /= 10;
+            }
+            for (int i = last - 1; i >= 0; i--) {
+                int unit = (i == 0 && len % 2 == 0) ? 10 : 100;
+                bytes[i] = VALUE_PAIR[(int)(val % unit)];
+                val /= unit;
+            }
+            overflow = val != 0;
+        } else {
+            for (int k = 0; k < len; k++) {
+                int d = digit(k);
+                bytes[last - (k + 1) / 2] |= (k & 1) == 0 ? d << 4 : d;
+            }
+            overflow = false;
+            for (int k = len; k < digits.length; k++) {
+                if (digits[k] != 0) {
+                    overflow = true;
+                    break;
+                }
+            }
+        }
+
+        boolean zero = isZeroBytes(bytes);
+        boolean negSign = negativeSign(zero, overflow);
+        bytes[last] |= negSign ? 0xd : 0xc;
+        context.memory.storeBytes(addr, bytes, bytes.length);
+
+        setCodes(context, negSign, zero, overflow);
+    }
+
+    /**
+     * Stores the value into a leading separate numeric string of len digits.
+     */
+    public void storeSeparate(Context context, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        byte[] ds = toDigits(len);
+        boolean overflow = isOverflow(len);
+        boolean zero = isZeroBytes(ds);
+        boolean negSign = negativeSign(zero, overflow);
+
+        byte[] chars = new byte[len + 1];
+        chars[0] = (byte)(negSign ? '-' : '+');
+        for (int k = 0; k < len; k++) {
+            chars[len - k] = (byte)('0' + ds[k]);
+        }
+        context.memory.storeBytes(addr, chars, chars.length);
+
+        setCodes(context, negSign, zero, overflow);
+    }
+
+    /**
+     * Stores the value into a trailing numeric string of len digits. The last
+     * character is the table entry indexed by the packed byte of the least
+     * significant digit and the sign.
+     */
+    public void storeTrailing(Context context, int tblAddr, int addr, int len) {
+        assert len <= MAX_LENGTH : "Reserved operand fault";
+
+        byte[] ds = toDigits(len);
+        boolean overflow = isOverflow(len);
+        boolean zero = isZeroBytes(ds);
+        boolean negSign = negativeSign(zero, overflow);
+
+        if (len > 0) {
+            byte[] chars = new byte[len];
+            for (int k = 1; k < len; k++) {
+                chars[len - 1 - k] = (byte)('0' + ds[k]);
+            }
+            int index = ds[0] << 4 | (negSign ? 0xd : 0xc);
+            chars[len - 1] = (byte)context.memory.loadInt(tblAddr + index, DataType.B).uint();
+            context.memory.storeBytes(addr, chars, chars.length);
+        }
+
+        setCodes(context, negSign, zero, overflow);
+    }
+
+    // negative zero is stored only when the result overflowed
+    private boolean negativeSign(boolean zero, boolean overflow) {
+        return negative && (!zero || overflow);
+    }
+
+    private static void setCodes(Context context, boolean negSign, boolean zero, boolean overflow) {
+        context.flagN.set( negSign );
+        context.flagZ.set( zero );
+        context.flagV.set( overflow );
+        context.flagC.clear();
+    }
+
+    private static boolean isZeroBytes(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isOverflow(int len) {
+        if (digits == null) {
+            return len < POW10.length && value >= POW10[len];
+        }
+        for (int k = len; k < digits.length; k++) {
+            if (digits[k] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the low-order 32 bits of the value.
+     */
+    public int intValue() {
+        long val = magnitude();
+        return (int)(negative ? -val : val);
+    }
+
+    public boolean isIntOverflow() {
+        long max = negative ? 0x80000000L : 0x7fffffffL;
+        return isOverflow(10) || magnitude() > max;
+    }
+
+    // low-order 64 bits of the magnitude
+    private long magnitude() {
+        if (digits == null) {
+            return value;
+        }
+        long val = 0;
+        for (int k = digits.length - 1; k >= 0; k--) {
+            val = val * 10 + digits[k];
+        }
+        return val;
+    }
+
+    public boolean isZero() {
+        if (digits == null) {
+            return value == 0;
+        }
+        for (byte d : digits) {
+            if (d != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isNegative() {
+        return negative && !isZero();
+    }
+
+    public PackedDecimal negate() {
+        if (digits == null) {
+            return new PackedDecimal(!negative, value);
+        } else {
+            return new PackedDecimal(!negative, digits);
+        }
+    }
+
+    /**
+     * Multiplies the value by 10 ** count. On a right shift, round is added
+     * to the most significant digit shifted out.
+     */
+    public PackedDecimal shift(int count, int round) {
+        if (count >= 0) {
+            if (isShort() && count < POW10.length && value < POW10[POW10.length - 1 - count]) {
+                return new PackedDecimal(negative, value * POW10[count]);
+            }
+            byte[] src = toDigits(length());
+            byte[] ds = new byte[src.length + count];
+            System.arraycopy(src, 0, ds, count, src.length);
+            return new PackedDecimal(negative, ds);
+        }
+
+        int rcount = -count;
+        if (isShort()) {
+            long val = rcount < POW10.length ? value / POW10[rcount] : 0;
+            int msd = rcount - 1 < POW10.length ? (int)(value / POW10[rcount - 1] % 10) : 0;
+            if (msd + round > 9) {
+                ++val;
+            }
+            return new PackedDecimal(negative, val);
+        }
+        byte[] src = toDigits(length());
+        byte[] ds = new byte[Math.max(src.length - rcount, 0) + 1];
+        if (rcount < src.length) {
+            System.arraycopy(src, rcount, ds, 0, src.length - rcount);
+        }
+        int msd = rcount - 1 < src.length ? src[rcount - 1] : 0;
+        if (msd + round > 9) {
+            for (int k = 0; ++ds[k] > 9; k++) {
+                ds[k] = 0;
+            }
+        }
+        return new PackedDecimal(negative, ds);
+    }
+
+    public static PackedDecimal add(PackedDecimal lhs, PackedDecimal rhs) {
+        if (lhs.isShort() && rhs.isShort()) {
+            long sum = lhs.signedValue() + rhs.signedValue();
+            return new PackedDecimal(sum < 0, Math.abs(sum));
+        }
+
+        int n = Math.max(lhs.length(), rhs.length()) + 1;
+        byte[] a = lhs.toDigits(n);
+        byte[] b = rhs.toDigits(n);
+        if (lhs.negative == rhs.negative) {
+            return new PackedDecimal(lhs.negative, addDigits(a, b));
+        } else if (compareDigits(a, b) >= 0) {
+            return new PackedDecimal(lhs.negative, subDigits(a, b));
+        } else {
+            return new PackedDecimal(rhs.negative, subDigits(b, a));
+        }
+    }
+
+    public static PackedDecimal sub(PackedDecimal lhs, PackedDecimal rhs) {
+        return add(lhs, rhs.negate());
+    }
+
+    public static PackedDecimal mul(PackedDecimal lhs, PackedDecimal rhs) {
+        boolean negative = lhs.negative != rhs.negative;
+        if (lhs.isShort() && rhs.isShort()) {
+            long prod = lhs.value * rhs.value;
+            if (Math.multiplyHigh(lhs.value, rhs.value) == 0 && prod >= 0) {
+                return new PackedDecimal(negative, prod);
+            }
+        }
+
+        byte[] a = lhs.toDigits(lhs.length());
+        byte[] b = rhs.toDigits(rhs.length());
+        int[] acc = new int[a.length + b.length];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                acc[i + j] += a[i] * b[j];
+            }
+        }
+        byte[] prod = new byte[acc.length];
+        int carry = 0;
+        for (int k = 0; k < acc.length; k++) {
+            int tmp = acc[k] + carry;
+            prod[k] = (byte)(tmp % 10);
+            carry = tmp / 10;
+        }
+        return new PackedDecimal(negative, prod);
+    }
+
+    /**
+     * Returns the quotient truncated toward zero, or null if the divisor is zero.
+     */
+    public static PackedDecimal div(PackedDecimal dividend, PackedDecimal divisor) {
+        if (divisor.isZero()) {
+            return null;
+        }
+        boolean negative = dividend.negative != divisor.negative;
+        if (dividend.isShort() && divisor.isShort()) {
+            return new PackedDecimal(negative, dividend.value / divisor.value);
+        }
+
+        int n = Math.max(dividend.length(), divisor.length()) + 1;
+        byte[] a = dividend.toDigits(n);
+        byte[] b = divisor.toDigits(n);
+        byte[] rem = new byte[n];
+        byte[] quo = new byte[n];
+        for (int k = n - 1; k >= 0; k--) {
+            System.arraycopy(rem, 0, rem, 1, n - 1);
+            rem[0] = a[k];
+            byte q = 0;
+            while (compareDigits(rem, b) >= 0) {
+                rem = subDigits(rem, b);
+                ++q;
+            }
+            quo[k] = q;
+        }
+        return new PackedDecimal(negative, quo);
+    }
+
+    public static int compare(PackedDecimal lhs, PackedDecimal rhs) {
+        if (lhs.isShort() && rhs.isShort()) {
+            return Long.compare(lhs.signedValue(), rhs.signedValue());
+        }
+
+        boolean lhsNeg = lhs.isNegative();
+        boolean rhsNeg = rhs.isNegative();
+        if (lhsNeg != rhsNeg) {
+            return lhsNeg ? -1 : 1;
+        }
+        int n = Math.max(lhs.length(), rhs.length());
+        int cmp = compareDigits(lhs.toDigits(n), rhs.toDigits(n));
+        return lhsNeg ? -cmp : cmp;
+    }
+
+    private boolean isShort() {
+        return digits == null && value < LONG_LIMIT;
+    }
+
+    private long signedValue() {
+        return negative ? -value : value;
+    }
+
+    private int length() {
+        return digits == null ? 19 : digits.length;
+    }
+
+    private int digit(int k) {
+        return k < digits.length ? digits[k] : 0;
+    }
+
+    private byte[] toDigits(int n) {
+        byte[] ds = new byte[n];
+        if (digits == null) {
+            long val = value;
+            for (int k = 0; k < n && val != 0; k++) {
+                ds[k] = (byte)(val % 10);
+                val /= 10;
+            }
+        } else {
+            System.arraycopy(digits, 0, ds, 0, Math.min(n, digits.length));
+        }
+        return ds;
+    }
+
+    private static byte[] addDigits(byte[] a, byte[] b) {
+        byte[] sum = new byte[a.length];
+        int carry = 0;
+        for (int k = 0; k < a.length; k++) {
+            int tmp = a[k] + b[k] + carry;
+            carry = tmp >= 10 ? 1 : 0;
+            sum[k] = (byte)(tmp - carry * 10);
+        }
+        return sum;
+    }
+
+    // a must not be less than b
+    private static byte[] subDigits(byte[] a, byte[] b) {
+        byte[] diff = new byte[a.length];
+        int borrow = 0;
+        for (int k = 0; k < a.length; k++) {
+            int tmp = a[k] - b[k] - borrow;
+            borrow = tmp < 0 ? 1 : 0;
+            diff[k] = (byte)(tmp + borrow * 10);
+        }
+        return diff;
+    }
+
+    private static int compareDigits(byte[] a, byte[] b) {
+        for (int k = a.length - 1; k >= 0; k--) {
+            if (a[k] != b[k]) {
+                return a[k] < b[k] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+}
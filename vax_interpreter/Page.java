@@ -0,0 +1,392 @@
+package vax_interpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+import static java.nio.file.StandardOpenOption.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * A PAGE_SIZE block of guest memory. After fork the parent and the child
+ * map the same pages; refs counts the memories mapping a page, and the
+ * one that stores into a shared page first takes a private copy of it.
+ *
+ * Guest instructions, and so fork, exec and exit, run holding
+ * Context.class, which also guards refs.
+ *
+ * Pages live on the Java heap unless -m selects an off-heap arena.
+ */
+abstract class Page {
+    // stands in for pages that have never been stored into
+    public static final Page ZERO = new HeapPage();
+    static {
+        ZERO.setReadOnly();
+    }
+
+    private static BufferArena arena;
+    private int refs = 1;
+    private boolean readOnly;
+
+    /**
+     * Selects where new pages are allocated: "heap", "direct" for off-heap
+     * memory, or "file:path" for off-heap memory mapped from path.
+     */
+    public static void useBackend(String spec) throws IOException {
+        if (spec.equals("heap")) {
+            arena = null;
+        } else if (spec.equals("direct")) {
+            arena = new BufferArena(null);
+        } else if (spec.startsWith("file:")) {
+            arena = new BufferArena(Path.of(spec.substring(5)));
+        } else {
+            throw new IllegalArgumentException(spec);
+        }
+    }
+
+    /**
+     * Returns a zero-filled page from the selected backend.
+     */
+    public static Page allocate() {
+        return arena == null ? new HeapPage() : new BufferPage(arena);
+    }
+
+    public abstract byte getByte(int off);
+    public abstract short getWord(int off);
+    public abstract int getLongword(int off);
+    public abstract long getQuadword(int off);
+    public abstract void putByte(int off, byte val);
+    public abstract void putWord(int off, short val);
+    public abstract void putLongword(int off, int val);
+    public abstract void putQuadword(int off, long val);
+
+    /**
+     * Copies len bytes from off into dest at destOff.
+     */
+    public abstract void get(int off, byte[] dest, int destOff, int len);
+
+    /**
+     * Copies len bytes of src from srcOff into the page at off.
+     */
+    public abstract void put(int off, byte[] src, int srcOff, int len);
+
+    protected abstract int getLongwordVolatile(int off);
+    protected abstract boolean compareAndSetLongword(int off, int expected, int val);
+
+    // a page of the same backend holding the same bytes
+    protected abstract Page duplicate();
+
+    // gives the storage back once no memory maps the page
+    protected void free() {}
+
+    /**
+     * Atomically sets bits in the byte at off and returns its old value.
+     */
+    public int getAndSetBits(int off, int bits) {
+        int shift = (off & 3) << 3;
+        return updateLongword(off, bits << shift, -1) >>> shift & 0xff;
+    }
+
+    /**
+     * Atomically clears bits in the byte at off and returns its old value.
+     */
+    public int getAndClearBits(int off, int bits) {
+        int shift = (off & 3) << 3;
+        return updateLongword(off, 0, ~(bits << shift)) >>> shift & 0xff;
+    }
+
+    /**
+     * Atomically adds val to the aligned word at off and returns its old value.
+     */
+    public short getAndAddWord(int off, short val) {
+        int base = off & ~3;
+        int shift = (off & 2) << 3;
+        int cur;
+        short old;
+        do {
+            cur = getLongwordVolatile(base);
+            old = (short)(cur >>> shift);
+        } while (!compareAndSetLongword(base, cur,
+                     cur & ~(0xffff << shift) | ((old + val) & 0xffff) << shift));
+        return old;
+    }
+
+    // atomics are only available on aligned longwords, so narrower
+    // updates go through the longword holding them
+    private int updateLongword(int off, int or, int and) {
+        int base = off & ~3;
+        int cur;
+        do {
+            cur = getLongwordVolatile(base);
+        } while (!compareAndSetLongword(base, cur, (cur | or) & and));
+        return cur;
+    }
+
+    public Page share() {
+        ++refs;
+        return this;
+    }
+
+    public void release() {
+        if (--refs == 0) {
+            free();
+        }
+    }
+
+    public boolean isShared() {
+        return refs > 1;
+    }
+
+    public void setReadOnly() {
+        readOnly = true;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean isMapped() {
+        return refs > 0;
+    }
+
+    public boolean isZero() {
+        for (int off = 0; off < PAGE_SIZE; off += 8) {
+            if (getQuadword(off) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean sameAs(Page other) {
+        for (int off = 0; off < PAGE_SIZE; off += 8) {
+            if (getQuadword(off) != other.getQuadword(off)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the memory mapping this page may store into it.
+     */
+    public boolean isPrivate() {
+        return refs == 1 && !readOnly;
+    }
+
+    /**
+     * Returns a private, writable copy of this page and releases this one.
+     */
+    public Page copy() {
+        // releasing first could hand the storage to the copy, zeroed
+        Page copy = duplicate();
+        release();
+        return copy;
+    }
+}
+
+class HeapPage extends Page {
+    private static final VarHandle WORD =
+        MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGWORD =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle QUADWORD =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] bytes;
+
+    HeapPage() {
+        bytes = new byte[PAGE_SIZE];
+    }
+
+    private HeapPage(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override public byte getByte(int off) {
+        return bytes[off];
+    }
+
+    @Override public short getWord(int off) {
+        return (short)WORD.get(bytes, off);
+    }
+
+    @Override public int getLongword(int off) {
+        return (int)LONGWORD.get(bytes, off);
+    }
+
+    @Override public long getQuadword(int off) {
+        return (long)QUADWORD.get(bytes, off);
+    }
+
+    @Override public void putByte(int off, byte val) {
+        bytes[off] = val;
+    }
+
+    @Override public void putWord(int off, short val) {
+        WORD.set(bytes, off, val);
+    }
+
+    @Override public void putLongword(int off, int val) {
+        LONGWORD.set(bytes, off, val);
+    }
+
+    @Override public void putQuadword(int off, long val) {
+        QUADWORD.set(bytes, off, val);
+    }
+
+    @Override public void get(int off, byte[] dest, int destOff, int len) {
+        System.arraycopy(bytes, off, dest, destOff, len);
+    }
+
+    @Override public void put(int off, byte[] src, int srcOff, int len) {
+        System.arraycopy(src, srcOff, bytes, off, len);
+    }
+
+    @Override protected int getLongwordVolatile(int off) {
+        return (int)LONGWORD.getVolatile(bytes, off);
+    }
+
+    @Override protected boolean compareAndSetLongword(int off, int expected, int val) {
+        return LONGWORD.compareAndSet(bytes, off, expected, val);
+    }
+
+    @Override protected Page duplicate() {
+        return new HeapPage(bytes.clone());
+    }
+}
+
+/**
+ * A page held in a slice of an off-heap BufferArena chunk.
+ */
+class BufferPage extends Page {
+    private static final VarHandle WORD =
+        MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGWORD =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle QUADWORD =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final BufferArena arena;
+    private final ByteBuffer buf;
+
+    BufferPage(BufferArena arena) {
+        this.arena = arena;
+        this.buf = arena.allocate();
+    }
+
+    @Override public byte getByte(int off) {
+        return buf.get(off);
+    }
+
+    @Override public short getWord(int off) {
+        return (short)WORD.get(buf, off);
+    }
+
+    @Override public int getLongword(int off) {
+        return (int)LONGWORD.get(buf, off);
+    }
+
+    @Override public long getQuadword(int off) {
+        return (long)QUADWORD.get(buf, off);
+    }
+
+    @Override public void putByte(int off, byte val) {
+        buf.put(off, val);
+    }
+
+    @Override public void putWord(int off, short val) {
+        WORD.set(buf, off, val);
+    }
+
+    @Override public void putLongword(int off, int val) {
+        LONGWORD.set(buf, off, val);
+    }
+
+    @Override public void putQuadword(int off, long val) {
+        QUADWORD.set(buf, off, val);
+    }
+
+    @Override public void get(int off, byte[] dest, int destOff, int len) {
+        buf.get(off, dest, destOff, len);
+    }
+
+    @Override public void put(int off, byte[] src, int srcOff, int len) {
+        buf.put(off, src, srcOff, len);
+    }
+
+    @Override protected int getLongwordVolatile(int off) {
+        return (int)LONGWORD.getVolatile(buf, off);
+    }
+
+    @Override protected boolean compareAndSetLongword(int off, int expected, int val) {
+        return LONGWORD.compareAndSet(buf, off, expected, val);
+    }
+
+    @Override protected Page duplicate() {
+        BufferPage page = new BufferPage(arena);
+        page.buf.put(0, buf, 0, PAGE_SIZE);
+        return page;
+    }
+
+    @Override protected void free() {
+        arena.free(buf);
+    }
+}
+
+/**
+ * Off-heap storage for pages, carved out of direct or file-mapped chunks.
+ * Freed pages are kept for reuse, so the arena only grows to the peak
+ * number of pages mapped at once.
+ */
+class BufferArena {
+    private static final int ChunkSize = 1 << 20;
+    private static final byte[] zeros = new byte[PAGE_SIZE];
+
+    // backing file, or null for anonymous direct memory
+    private final FileChannel file;
+    private long fileSize;
+    private final Deque<ByteBuffer> freePages = new ArrayDeque<>();
+
+    BufferArena(Path path) throws IOException {
+        file = path == null ? null : FileChannel.open(path, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Returns a zero-filled PAGE_SIZE buffer.
+     */
+    public synchronized ByteBuffer allocate() {
+        ByteBuffer buf = freePages.poll();
+        if (buf != null) {
+            return buf.put(0, zeros);
+        }
+
+        ByteBuffer chunk = newChunk();
+        for (int off = PAGE_SIZE; off < ChunkSize; off += PAGE_SIZE) {
+            freePages.push(chunk.slice(off, PAGE_SIZE));
+        }
+        return chunk.slice(0, PAGE_SIZE);
+    }
+
+    public synchronized void free(ByteBuffer buf) {
+        freePages.push(buf);
+    }
+
+    private ByteBuffer newChunk() {
+        if (file == null) {
+            return ByteBuffer.allocateDirect(ChunkSize);
+        }
+        try {
+            ByteBuffer chunk = file.map(FileChannel.MapMode.READ_WRITE, fileSize, ChunkSize);
+            fileSize += ChunkSize;
+            return chunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
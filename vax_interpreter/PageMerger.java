@@ -0,0 +1,120 @@
+package vax_interpreter;
+
+import java.util.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * Same-page merging, enabled with -k. A daemon thread periodically hashes
+ * the writable pages of every guest memory and maps pages with the same
+ * contents to a single copy-on-write page. Pages that hold only zeros are
+ * unmapped, so they read as demand-zero again.
+ *
+ * Hashing runs without any lock. Each merge takes Context.class just long
+ * enough to check that the page is still mapped and unchanged and to swap
+ * it, which guest threads otherwise only hold for one instruction at a
+ * time. A page is merged only once its hash has stayed the same for a
+ * whole pass, so pages being written are left alone. The totals are
+ * reported on stderr after each pass that merged pages.
+ */
+class PageMerger implements Runnable {
+    private static final long IntervalMillis = 1000;
+    private static final Set<Context.Memory> memories =
+        Collections.newSetFromMap(new WeakHashMap<>());
+    private static boolean enabled;
+    private static long mergedPages;
+    private static long zeroPages;
+
+    // hashes seen in the previous pass
+    private Map<Page, Long> lastHashes = new IdentityHashMap<>();
+
+    public static void enable() {
+        enabled = true;
+        Thread thread = new Thread(new PageMerger(), "PageMerger");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public static void track(Context.Memory memory) {
+        if (enabled) {
+            synchronized (memories) {
+                memories.add(memory);
+            }
+        }
+    }
+
+    public static void untrack(Context.Memory memory) {
+        if (enabled) {
+            synchronized (memories) {
+                memories.remove(memory);
+            }
+        }
+    }
+
+    @Override public void run() {
+        try {
+            while (true) {
+                Thread.sleep(IntervalMillis);
+                scan();
+            }
+        } catch (InterruptedException e) {
+            // the interpreter is shutting down
+        }
+    }
+
+    private void scan() {
+        long merged = mergedPages + zeroPages;
+        List<Context.Memory> snapshot;
+        synchronized (memories) {
+            snapshot = new ArrayList<>(memories);
+        }
+
+        Map<Page, Long> hashes = new IdentityHashMap<>();
+        // first stable page seen with each hash
+        Map<Long, Page> canonical = new HashMap<>();
+        for (Context.Memory memory : snapshot) {
+            memory.forEachPage((addr, page) -> {
+                if (page.isReadOnly()) {
+                    return;
+                }
+                Long hash = hashes.computeIfAbsent(page, PageMerger::hash);
+                if (!hash.equals(lastHashes.get(page))) {
+                    return;
+                }
+                if (page.isZero()) {
+                    if (merge(memory, addr, page, null)) {
+                        ++zeroPages;
+                    }
+                    return;
+                }
+                Page into = canonical.putIfAbsent(hash, page);
+                if (into != null && into != page && merge(memory, addr, page, into)) {
+                    ++mergedPages;
+                }
+            });
+        }
+        lastHashes = hashes;
+        if (mergedPages + zeroPages != merged) {
+            report();
+        }
+    }
+
+    private static boolean merge(Context.Memory memory, int addr, Page page, Page into) {
+        synchronized (Context.class) {
+            return memory.merge(addr, page, into);
+        }
+    }
+
+    private static long hash(Page page) {
+        long h = 0;
+        for (int off = 0; off < PAGE_SIZE; off += 8) {
+            h = Long.rotateLeft((h ^ page.getQuadword(off)) * 0x9e3779b97f4a7c15L, 29);
+        }
+        return h;
+    }
+
+    private static void report() {
+        System.err.printf("Page merging: %d pages merged, %d zero pages dropped, %d KB saved\n",
+                          mergedPages, zeroPages, (mergedPages + zeroPages) * PAGE_SIZE / 1024);
+    }
+}
@@ -7,10 +7,13 @@ import static vax_interpreter.Kernel.Constant.*;
 class Process implements Runnable {
     public final Context context;
     private static boolean debugFlag;
-
+    private static final ThreadLocal<Context> current = new ThreadLocal<>();
+    // the process started from the command line, which takes checkpoints
+    private final boolean root;
 
     public Process(boolean debug, List<String> argStrs) throws IOException {
         debugFlag = debug;
+        root = true;
         context = new Context();
 
         String textPath = argStrs.get(0);
@@ -23,11 +26,33 @@ class Process implements Runnable {
     }
 
     public Process(Context parentContext) {
+        root = false;
         context = new Context(parentContext);
     }
 
+    private Process(boolean debug, Context restored) {
+        debugFlag = debug;
+        root = true;
+        context = restored;
+    }
+
+    /**
+     * Returns the process saved in the checkpoint at path.
+     */
+    public static Process restore(boolean debug, String path) throws IOException {
+        return new Process(debug, Checkpoint.restore(path));
+    }
+
+
+    /**
+     * Returns the context of the process running on this thread.
+     */
+    public static Context current() {
+        return current.get();
+    }
 
     @Override public void run() {
+        current.set(context);
         while (context.u.u_procp.p_stat == SRUN) {
             int pc = 0;
             String[] dump = null;
@@ -44,11 +69,19 @@ class Process implements Runnable {
                 }
 
                 ins.execute(context);
+
+                if (root && Checkpoint.isDue()) {
+                    Checkpoint.take(context);
+                }
             }
         }
     }
 
     public String[] dumpDatas() {
+        return dumpDatas(context);
+    }
+
+    public static String[] dumpDatas(Context context) {
         String[] lines = new String[3];
         lines[0] = String.format("%08x %08x %08x %08x %08x %08x",
                                  context.register[0], context.register[1], context.register[2],
@@ -0,0 +1,69 @@
+package vax_interpreter;
+
+/**
+ * Host-side record of the return addresses pushed by JSB, BSBB and BSBW.
+ *
+ * Each entry remembers the memory slot its address was pushed to. Any
+ * store that overlaps the recorded slots discards every entry, so an entry
+ * whose slot is at the current SP still matches the longword RSB would pop
+ * from guest memory.
+ *
+ * The stack grows down, so the slots decrease from the oldest entry to the
+ * newest and the newest one is the lowest live slot. Popping it raises
+ * low, and a caller may then reuse the freed slot for its own pushes
+ * without discarding its return address.
+ */
+class ReturnStack {
+    private static final int DEPTH = 32;
+
+    private final int[] slots = new int[DEPTH];
+    private final int[] targets = new int[DEPTH];
+    private int size;
+    // memory covered by the slots: low <= addr < high
+    private int low = Integer.MAX_VALUE;
+    private int high = Integer.MIN_VALUE;
+
+    public void push(int slot, int target) {
+        if (size > 0 && slot >= slots[size - 1]) {
+            // SP has been moved up past the newest entry without RSB
+            clear();
+        }
+        if (size == DEPTH) {
+            // forget the oldest entry
+            System.arraycopy(slots, 1, slots, 0, DEPTH - 1);
+            System.arraycopy(targets, 1, targets, 0, DEPTH - 1);
+            --size;
+        }
+        slots[size] = slot;
+        targets[size] = target;
+        ++size;
+        low = Math.min(low, slot);
+        high = Math.max(high, slot + 4);
+    }
+
+    public boolean predicts(int slot) {
+        return size > 0 && slots[size - 1] == slot;
+    }
+
+    public int pop() {
+        int target = targets[--size];
+        if (size == 0) {
+            clear();
+        } else {
+            low = slots[size - 1];
+        }
+        return target;
+    }
+
+    public void clear() {
+        size = 0;
+        low = Integer.MAX_VALUE;
+        high = Integer.MIN_VALUE;
+    }
+
+    public void stored(int addr, int len) {
+        if (addr < high && addr + len > low) {
+            clear();
+        }
+    }
+}
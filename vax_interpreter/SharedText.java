@@ -0,0 +1,66 @@
+package vax_interpreter;
+
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * Text segments shared by every process running the same binary. 0410
+ * text is read-only, so it is loaded into pages once per path and content
+ * and those pages are mapped into each Memory that executes it.
+ *
+ * The cache holds a reference on each page, so a mapped text page is
+ * never private and a store into it reaches Memory's copy-on-write path,
+ * where it is reported as a fault.
+ */
+class SharedText {
+    private static final Map<String, Page[]> images = new HashMap<>();
+
+    /**
+     * Returns the read-only pages holding text, as loaded from path.
+     */
+    public static synchronized Page[] get(String path, byte[] text) {
+        String key = Paths.get(path).toAbsolutePath().normalize() + "@" + digest(text);
+        Page[] pages = images.get(key);
+        if (pages == null) {
+            images.values().removeIf(SharedText::release);
+            pages = load(text);
+            images.put(key, pages);
+        }
+        return pages;
+    }
+
+    private static Page[] load(byte[] text) {
+        Page[] pages = new Page[(text.length + PAGE_MASK) >> PAGE_SHIFT];
+        for (int i = 0; i < pages.length; i++) {
+            int off = i << PAGE_SHIFT;
+            pages[i] = Page.allocate();
+            pages[i].put(0, text, off, Math.min(PAGE_SIZE, text.length - off));
+            pages[i].setReadOnly();
+        }
+        return pages;
+    }
+
+    // drops an image no process maps any more
+    private static boolean release(Page[] pages) {
+        for (Page page : pages) {
+            if (page.isShared()) {
+                return false;
+            }
+        }
+        for (Page page : pages) {
+            page.release();
+        }
+        return true;
+    }
+
+    private static String digest(byte[] text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ public class VaxInterpreter {
 
     public static void main(String[] args) {
         boolean debugFlag = false;
+        String restorePath = null;
         List<String> processArgs;
 
         int argi;
@@ -20,18 +21,63 @@ public class VaxInterpreter {
                 }
                 ++argi;
                 Kernel.rootdir = Paths.get(args[argi]);
+            } else if (args[argi].equals("-b")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                Breakpoints.request(args[argi]);
+            } else if (args[argi].equals("-w")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                Watchpoints.request(args[argi]);
+            } else if (args[argi].equals("-k")) {
+                PageMerger.enable();
+            } else if (args[argi].equals("-z")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                MemoryCompressor.enable(Long.parseLong(args[argi]));
+            } else if (args[argi].equals("-c")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                Checkpoint.request(args[argi]);
+            } else if (args[argi].equals("-r")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                restorePath = args[argi];
+            } else if (args[argi].equals("-m")) {
+                if (argi + 1 > args.length - 1) {
+                    throw new IllegalArgumentException(args[argi]);
+                }
+                ++argi;
+                try {
+                    Page.useBackend(args[argi]);
+                } catch (IOException e) {
+                    e.printStackTrace(System.err);
+                    return;
+                }
             } else {
                 break;
             }
         }
 
         processArgs = Arrays.asList(Arrays.copyOfRange(args, argi, args.length));
-        if (processArgs.isEmpty()) {
+        if (processArgs.isEmpty() && restorePath == null) {
             throw new IllegalArgumentException("No input file.");
         }
 
         try {
-            Process newProc = new Process(debugFlag, processArgs);
+            Process newProc = restorePath != null
+                ? Process.restore(debugFlag, restorePath)
+                : new Process(debugFlag, processArgs);
             new Thread(newProc).start();
         } catch (IOException e) {
             e.printStackTrace(System.err);
@@ -40,15 +86,18 @@ public class VaxInterpreter {
 }
 
 class Instruction {
+    public final int addr;
     public final Opcode opcode;
     public final List<Operand> operands;
 
-    protected Instruction(Opcode opc, List<Operand> oprs) {
+    protected Instruction(int addr, Opcode opc, List<Operand> oprs) {
+        this.addr = addr;
         this.opcode = opc;
         this.operands = oprs;
     }
 
     public static Instruction fetch(Context context) {
+        int addr = context.pc();
         Opcode opc = Opcode.fetch(context);
 
         List<Operand> oprs = new ArrayList<>(opc.operands().length);
@@ -60,10 +109,11 @@ class Instruction {
             oprs.add(opr);
         }
 
-        return new Instruction(opc, oprs);
+        return new Instruction(addr, opc, oprs);
     }
 
     public void execute(Context context) {
+        context.instruction = this;
         opcode.execute(operands, context);
     }
 
@@ -95,7 +145,9 @@ class Util {
     public static final int FP = 0xd;
     public static final int SP = 0xe;
     public static final int PC = 0xf;
-    public static final int MEM_SIZE = 0x80000;
+    public static final int PAGE_SHIFT = 9;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public static final int PAGE_MASK = PAGE_SIZE - 1;
 
     // Debug
     public static void printVal(byte[] val) {
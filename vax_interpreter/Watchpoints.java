@@ -0,0 +1,74 @@
+package vax_interpreter;
+
+import java.util.*;
+import static vax_interpreter.Util.*;
+
+/**
+ * Watchpoints given with -w as addr[:len]. Every write into a watched
+ * range is reported with the instruction that made it.
+ *
+ * Stores look up a flag per page, so writes outside the watched pages
+ * cost one bit lookup; only writes into those pages compare ranges.
+ */
+class Watchpoints {
+    private static final int DefaultLength = 4;
+    private static final BitSet pages = new BitSet();
+    // start and end (exclusive) of each range
+    private static final List<int[]> ranges = new ArrayList<>();
+
+    public static void request(String spec) {
+        int colon = spec.indexOf(':');
+        int start = Integer.decode(colon < 0 ? spec : spec.substring(0, colon));
+        int len = colon < 0 ? DefaultLength : Integer.decode(spec.substring(colon + 1));
+        if (len <= 0 || start < 0 || start + len < 0) {
+            throw new IllegalArgumentException(spec);
+        }
+
+        ranges.add(new int[] { start, start + len });
+        pages.set(start >>> PAGE_SHIFT, (start + len - 1 >>> PAGE_SHIFT) + 1);
+    }
+
+    /**
+     * Returns whether [addr, addr + size) lies on a watched page.
+     */
+    public static boolean isWatched(int addr, int size) {
+        int last = addr + size - 1 >>> PAGE_SHIFT;
+        for (int p = addr >>> PAGE_SHIFT; p <= last; p++) {
+            if (pages.get(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reports a write of newBytes over oldBytes at addr for every watched
+     * range it overlaps.
+     */
+    public static void report(Context context, int addr, byte[] oldBytes, byte[] newBytes) {
+        for (int[] range : ranges) {
+            int from = Math.max(addr, range[0]);
+            int to = Math.min(addr + newBytes.length, range[1]);
+            if (from >= to) {
+                continue;
+            }
+
+            Instruction ins = context.instruction;
+            System.err.printf("Watchpoint %08x:%d written at %08x: %s\n",
+                              range[0], range[1] - range[0],
+                              ins != null ? ins.addr : context.pc(),
+                              ins != null ? ins.mnemonic() : "");
+            System.err.printf("  %08x old %s new %s\n", from,
+                              hex(oldBytes, from - addr, to - addr),
+                              hex(newBytes, from - addr, to - addr));
+        }
+    }
+
+    private static String hex(byte[] bytes, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append(String.format("%02x", bytes[i]));
+        }
+        return sb.toString();
+    }
+}